@@ -36,10 +36,13 @@ grammar Python3;
 tokens { INDENT, DEDENT }
 
 @lexer::members {
-  // A queue where extra tokens are pushed on (see the NEWLINE lexer rule).
-  private java.util.LinkedList<Token> tokens = new java.util.LinkedList<>();
+  // A queue (ring buffer) where extra tokens are pushed on (see the NEWLINE lexer rule).
+  private Token[] tokens = new Token[16];
+  private int tokensHead = 0;
+  private int tokensSize = 0;
   // The stack that keeps track of the indentation level.
-  private java.util.Stack<Integer> indents = new java.util.Stack<>();
+  private int[] indents = new int[16];
+  private int indentsSize = 0;
   // The amount of opened braces, brackets and parenthesis.
   private int opened = 0;
   // The most recently produced token.
@@ -47,31 +50,42 @@ tokens { INDENT, DEDENT }
   @Override
   public void emit(Token t) {
     super.setToken(t);
-    tokens.offer(t);
+    offerToken(t);
   }
 
   @Override
   public Token nextToken() {
+    if (_input.index() == 0) {
+      handleStartOfInput();
+    }
+
     // Check if the end-of-file is ahead and there are still some DEDENTS expected.
-    if (_input.LA(1) == EOF && !this.indents.isEmpty()) {
+    if (_input.LA(1) == EOF && this.indentsSize > 0) {
       // Remove any trailing EOF tokens from our buffer.
-      for (int i = tokens.size() - 1; i >= 0; i--) {
-        if (tokens.get(i).getType() == EOF) {
-          tokens.remove(i);
+      int kept = 0;
+      for (int i = 0; i < tokensSize; i++) {
+        Token token = tokens[(tokensHead + i) & (tokens.length - 1)];
+        if (token.getType() != EOF) {
+          tokens[(tokensHead + kept) & (tokens.length - 1)] = token;
+          kept++;
         }
       }
+      for (int i = kept; i < tokensSize; i++) {
+        tokens[(tokensHead + i) & (tokens.length - 1)] = null;
+      }
+      tokensSize = kept;
 
       // First emit an extra line break that serves as the end of the statement.
-      this.emit(commonToken(Python3Parser.NEWLINE, "\n"));
+      this.emit(commonToken(Python3Parser.NEWLINE, 1));
 
       // Now emit as much DEDENT tokens as needed.
-      while (!indents.isEmpty()) {
+      while (indentsSize > 0) {
         this.emit(createDedent());
-        indents.pop();
+        indentsSize--;
       }
 
       // Put the EOF back on the token stream.
-      this.emit(commonToken(Python3Parser.EOF, "<EOF>"));
+      this.emit(commonToken(Python3Parser.EOF, "<EOF>".length()));
     }
 
     Token next = super.nextToken();
@@ -81,22 +95,84 @@ tokens { INDENT, DEDENT }
       this.lastToken = next;
     }
 
-    return tokens.isEmpty() ? next : tokens.poll();
+    return tokensSize == 0 ? next : pollToken();
+  }
+
+  // Forget the state of the previous input so the lexer can be reused.
+  @Override
+  public void reset() {
+    super.reset();
+    java.util.Arrays.fill(this.tokens, null);
+    this.tokensHead = 0;
+    this.tokensSize = 0;
+    this.indentsSize = 0;
+    this.opened = 0;
+    this.lastToken = null;
+  }
+
+  private void offerToken(Token t) {
+    if (tokensSize == tokens.length) {
+      Token[] grown = new Token[tokens.length * 2];
+      for (int i = 0; i < tokensSize; i++) {
+        grown[i] = tokens[(tokensHead + i) & (tokens.length - 1)];
+      }
+      tokens = grown;
+      tokensHead = 0;
+    }
+    tokens[(tokensHead + tokensSize) & (tokens.length - 1)] = t;
+    tokensSize++;
+  }
+
+  private Token pollToken() {
+    Token t = tokens[tokensHead];
+    tokens[tokensHead] = null;
+    tokensHead = (tokensHead + 1) & (tokens.length - 1);
+    tokensSize--;
+    return t;
+  }
+
+  private void pushIndent(int indent) {
+    if (indentsSize == indents.length) {
+      indents = java.util.Arrays.copyOf(indents, indents.length * 2);
+    }
+    indents[indentsSize++] = indent;
+  }
+
+  // The spaces at the start of the input are handled here rather than by a predicated
+  // alternative of the NEWLINE rule: a predicate at the start of a rule stops ANTLR from
+  // caching the start state of the lexer DFA, which then has to be computed for every token.
+  private void handleStartOfInput() {
+    int length = 0;
+    int indent = 0;
+    for (int c = _input.LA(1); c == ' ' || c == '\t'; c = _input.LA(1)) {
+      indent = nextIndentation(indent, c);
+      getInterpreter().consume(_input);
+      length++;
+    }
+    int next = _input.LA(1);
+    if (length == 0 || next == '\r' || next == '\n' || next == '\f' || next == '#') {
+      // a blank line, the spaces are skipped
+      return;
+    }
+    emit(commonToken(Python3Parser.NEWLINE, 0));
+    pushIndent(indent);
+    emit(commonToken(Python3Parser.INDENT, length));
+    this.lastToken = tokens[(tokensHead + tokensSize - 1) & (tokens.length - 1)];
   }
 
   private Token createDedent() {
-    CommonToken dedent = commonToken(Python3Parser.DEDENT, "");
+    CommonToken dedent = commonToken(Python3Parser.DEDENT, 0);
     dedent.setLine(this.lastToken.getLine());
     return dedent;
   }
 
-  private CommonToken commonToken(int type, String text) {
+  private CommonToken commonToken(int type, int length) {
     int stop = this.getCharIndex() - 1;
-    int start = text.isEmpty() ? stop : stop - text.length() + 1;
+    int start = length == 0 ? stop : stop - length + 1;
     return new CommonToken(this._tokenFactorySourcePair, type, DEFAULT_TOKEN_CHANNEL, start, stop);
   }
 
-  // Calculates the indentation of the provided spaces, taking the
+  // Calculates the indentation following a space or a tab, taking the
   // following rules into account:
   //
   // "Tabs are replaced (from left to right) by one to eight spaces
@@ -104,24 +180,50 @@ tokens { INDENT, DEDENT }
   //  the replacement is a multiple of eight [...]"
   //
   //  -- https://docs.python.org/3.1/reference/lexical_analysis.html#indentation
-  static int getIndentationCount(String spaces) {
-    int count = 0;
-    for (char ch : spaces.toCharArray()) {
-      switch (ch) {
-        case '\t':
-          count += 8 - (count % 8);
-          break;
-        default:
-          // A normal space char.
-          count++;
-      }
-    }
-
-    return count;
+  static int nextIndentation(int count, int ch) {
+    return ch == '\t' ? count + 8 - (count % 8) : count + 1;
   }
 
-  boolean atStartOfInput() {
-    return super.getCharPositionInLine() == 0 && super.getLine() == 1;
+  // Handles a line break followed by the spaces of the next line: the text of the token is
+  // examined in place by looking back in the input, without copying it.
+  private void handleNewLine() {
+    int newLineLength = 0;
+    int spacesLength = 0;
+    int indent = 0;
+    for (int i = this._tokenStartCharIndex - this.getCharIndex(); i < 0; i++) {
+      int c = _input.LA(i);
+      if (c == '\r' || c == '\n' || c == '\f') {
+        newLineLength++;
+      } else {
+        spacesLength++;
+        indent = nextIndentation(indent, c);
+      }
+    }
+    int next = _input.LA(1);
+    if (opened > 0 || next == '\r' || next == '\n' || next == '\f' || next == '#') {
+      // If we're inside a list or on a blank line, ignore all indents,
+      // dedents and line breaks.
+      skip();
+    }
+    else {
+      emit(commonToken(NEWLINE, newLineLength));
+      int previous = indentsSize == 0 ? 0 : indents[indentsSize - 1];
+      if (indent == previous) {
+        // skip indents of the same size as the present indent-size
+        skip();
+      }
+      else if (indent > previous) {
+        pushIndent(indent);
+        emit(commonToken(Python3Parser.INDENT, spacesLength));
+      }
+      else {
+        // Possibly emit more than 1 DEDENT token.
+        while (indentsSize > 0 && indents[indentsSize - 1] > indent) {
+          this.emit(createDedent());
+          indentsSize--;
+        }
+      }
+    }
   }
 }
 
@@ -208,23 +310,33 @@ test: or_test ('if' or_test 'else' test)? | lambdef;
 test_nocond: or_test | lambdef_nocond;
 lambdef: 'lambda' (varargslist)? ':' test;
 lambdef_nocond: 'lambda' (varargslist)? ':' test_nocond;
-or_test: and_test ('or' and_test)*;
-and_test: not_test ('and' not_test)*;
-not_test: 'not' not_test | comparison;
+// The boolean operators and the arithmetic are left-recursive rules which ANTLR compiles to precedence
+// climbing: an operand takes one context instead of one per precedence level of the reference grammar.
+// The alternatives are listed from the tightest binding to the loosest. The operands of the comparisons
+// are expressions, never boolean tests, so `a < not b` stays a syntax error.
+// `expr` stops short of the comparisons, so the `in` of `for x in y` is not taken for an operator.
+or_test
+ : comparison
+ | 'not' or_test
+ | or_test 'and' or_test
+ | or_test 'or' or_test
+ ;
 comparison: expr (comp_op expr)*;
 // <> isn't actually a valid comparison operator in Python. It's here for the
 // sake of a __future__ import described in PEP 401 (which really works :-)
 comp_op: '<'|'>'|'=='|'>='|'<='|'<>'|'!='|'in'|'not' 'in'|'is'|'is' 'not';
 star_expr: '*' expr;
-expr: xor_expr ('|' xor_expr)*;
-xor_expr: and_expr ('^' and_expr)*;
-and_expr: shift_expr ('&' shift_expr)*;
-shift_expr: arith_expr (('<<'|'>>') arith_expr)*;
-arith_expr: term (('+'|'-') term)*;
-term: factor (('*'|'@'|'/'|'%'|'//') factor)*;
-factor: ('+'|'-'|'~') factor | power;
-power: atom_expr ('**' factor)?;
-atom_expr: (AWAIT)? atom trailer*;
+expr
+ : (AWAIT)? atom trailer*
+ | <assoc=right> expr '**' expr
+ | ('+'|'-'|'~') expr
+ | expr ('*'|'@'|'/'|'%'|'//') expr
+ | expr ('+'|'-') expr
+ | expr ('<<'|'>>') expr
+ | expr '&' expr
+ | expr '^' expr
+ | expr '|' expr
+ ;
 atom: ('(' (yield_expr|testlist_comp)? ')' |
        '[' (testlist_comp)? ']' |
        '{' (dictorsetmaker)? '}' |
@@ -328,38 +440,9 @@ ASYNC : 'async';
 AWAIT : 'await';
 
 NEWLINE
- : ( {atStartOfInput()}?   SPACES
-   | ( '\r'? '\n' | '\r' | '\f' ) SPACES?
-   )
+ : ( '\r'? '\n' | '\r' | '\f' ) SPACES?
    {
-     String newLine = getText().replaceAll("[^\r\n\f]+", "");
-     String spaces = getText().replaceAll("[\r\n\f]+", "");
-     int next = _input.LA(1);
-     if (opened > 0 || next == '\r' || next == '\n' || next == '\f' || next == '#') {
-       // If we're inside a list or on a blank line, ignore all indents, 
-       // dedents and line breaks.
-       skip();
-     }
-     else {
-       emit(commonToken(NEWLINE, newLine));
-       int indent = getIndentationCount(spaces);
-       int previous = indents.isEmpty() ? 0 : indents.peek();
-       if (indent == previous) {
-         // skip indents of the same size as the present indent-size
-         skip();
-       }
-       else if (indent > previous) {
-         indents.push(indent);
-         emit(commonToken(Python3Parser.INDENT, spaces));
-       }
-       else {
-         // Possibly emit more than 1 DEDENT token.
-         while(!indents.isEmpty() && indents.peek() > indent) {
-           this.emit(createDedent());
-           indents.pop();
-         }
-       }
-     }
+     handleNewLine();
    }
  ;
 
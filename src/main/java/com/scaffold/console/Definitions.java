@@ -20,6 +20,38 @@ public class Definitions {
     public static final String UNITTEST_NAME = "unittest";
     public static final String PYTEST_NAME = "pytest";
 
+    public static final String OPTION_PARALLELISM = "--parallelism";
+    public static final String OPTION_PIPELINE = "--pipeline";
+    public static final String OPTION_PIPELINE_QUEUE_CAPACITY = "--pipeline-queue-capacity";
+    public static final String OPTION_PIPELINE_READ_THREADS = "--pipeline-read-threads";
+    public static final String OPTION_PIPELINE_PARSE_THREADS = "--pipeline-parse-threads";
+    public static final String OPTION_PIPELINE_RENDER_THREADS = "--pipeline-render-threads";
+    public static final String OPTION_PIPELINE_WRITE_THREADS = "--pipeline-write-threads";
+    public static final String OPTION_PARSE_MODE = "--parse-mode";
+    public static final String OPTION_DFA_CACHE_MAX_MB = "--dfa-cache-max-mb";
+    public static final String OPTION_EXTRACTION_ENGINE = "--extraction-engine";
+    public static final String OPTION_RECOVER = "--recover";
+    public static final String OPTION_CHUNK_THRESHOLD_KB = "--chunk-threshold-kb";
+    public static final String OPTION_REUSE_PARSERS = "--reuse-parsers";
+    public static final String OPTION_COMPACT_TOKENS = "--compact-tokens";
+    public static final String OPTION_PARSE_STACK_MB = "--parse-stack-mb";
+    public static final String OPTION_PARSE_TIMEOUT_MS = "--parse-timeout-ms";
+    public static final String OPTION_PREFILTER = "--prefilter";
+    public static final String OPTION_GENERATED_MARKERS = "--generated-markers";
+    public static final String OPTION_MAX_MODULE_KB = "--max-module-kb";
+    public static final String OPTION_PROFILE_REPORT = "--profile-report";
+    public static final String OPTION_DFA_SNAPSHOT = "--dfa-snapshot";
+    public static final String OPTION_GITIGNORE = "--gitignore";
+    public static final String OPTION_STREAM_MODULES = "--stream-modules";
+    public static final String OPTION_SORT_MODULES = "--sort-modules";
+    public static final String OPTION_CHANGED_SINCE = "--changed-since";
+
+    public static final String ABBREV_PARSE_MODE_LL = "ll";
+    public static final String ABBREV_PARSE_MODE_SLL = "sll";
+    public static final String ABBREV_EXTRACTION_ENGINE_TREE = "tree";
+    public static final String ABBREV_EXTRACTION_ENGINE_LEXER = "lexer";
+    public static final String ABBREV_EXTRACTION_ENGINE_STREAM = "stream";
+
     public enum TestFramework {
         UNITTEST, PYTEST
     }
@@ -31,4 +63,16 @@ public class Definitions {
     public enum TestStateType {
         PASS, FAIL
     }
+
+    public enum ParseMode {
+        LL, SLL_LL
+    }
+
+    public enum ExtractionEngine {
+        PARSE_TREE, LEXER_OUTLINE, STREAMING
+    }
+
+    public enum SkipReason {
+        NO_FUNCTIONS, GENERATED, TOO_LARGE
+    }
 }
@@ -0,0 +1,283 @@
+package com.scaffold.console;
+
+import com.scaffold.console.Definitions.SkipReason;
+import com.scaffold.parser.ModulePrefilter;
+import com.scaffold.parser.SourceParser;
+import com.scaffold.writer.PyModule;
+import com.scaffold.writer.PyWriter;
+import com.scaffold.writer.PyWriterConfig;
+import org.antlr.v4.runtime.CharStream;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Test generation organized as a pipeline of read, parse, render and write stages.
+ * Each stage has its own pool of threads and the stages are joined by bounded queues,
+ * so a stage that cannot keep up blocks the stages feeding it (backpressure)
+ * while the blocking file I/O overlaps with the parsing of other modules.
+ */
+public class GenerationPipeline {
+
+    private static final Object END_OF_INPUT = new Object();
+
+    private final PyWriterConfig config;
+    private final Logger logger;
+    final List<Stage<?, ?>> stages = new ArrayList<>();
+
+    public GenerationPipeline(PyWriterConfig config, Logger logger) {
+        this.config = config;
+        this.logger = logger;
+
+        int capacity = config.pipelineQueueCapacity;
+        Stage<RenderedModule, Void> write = new Stage<>("write", config.pipelineWriteThreads, 0,
+                capacity, this::writeModule, null, logger);
+        Stage<PyModule, RenderedModule> render = new Stage<>("render",
+                config.pipelineRenderThreads, 0, capacity, this::renderModule, write, logger);
+        Stage<ModuleSource, PyModule> parse = new Stage<>("parse", config.pipelineParseThreads,
+                config.parseStackBytes, capacity, this::parseModule, render, logger);
+        Stage<String, ModuleSource> read = new Stage<>("read", config.pipelineReadThreads, 0,
+                capacity, this::readModule, parse, logger);
+        this.stages.add(read);
+        this.stages.add(parse);
+        this.stages.add(render);
+        this.stages.add(write);
+    }
+
+    /**
+     * Push all module paths through the pipeline and wait until every stage is drained.
+     */
+    public void run(Iterable<String> modulePaths) throws InterruptedException {
+        for (Stage<?, ?> stage : this.stages) {
+            stage.start();
+        }
+
+        Stage<?, ?> first = this.stages.get(0);
+        try {
+            for (String modulePath : modulePaths) {
+                first.offer(modulePath);
+            }
+        } finally {
+            // the stages drain and stop even if the module paths fail to be listed
+            first.endInput();
+        }
+
+        for (Stage<?, ?> stage : this.stages) {
+            stage.awaitTermination();
+        }
+
+        for (Stage<?, ?> stage : this.stages) {
+            this.logger.info(stage.statistics());
+        }
+    }
+
+    private ModuleSource readModule(String modulePath) throws Exception {
+        this.logger.info(MessageFormat.format("Reading the source code of {0}", modulePath));
+        ByteBuffer source = SourceParser.readSourceCode(modulePath);
+        SkipReason reason = ModulePrefilter.check(source, this.config);
+        if (reason != null) {
+            this.logger.info(MessageFormat.format("Skipping {0}: {1}", modulePath, reason));
+            return null;
+        }
+        Path destDir = Paths.get(new PyModule(modulePath).baseDir, this.config.testOutputDirName);
+        if (!Files.exists(destDir)) {
+            (new File(destDir.toString())).mkdirs();
+        }
+        return new ModuleSource(modulePath, SourceParser.openSourceCode(modulePath, source));
+    }
+
+    private PyModule parseModule(ModuleSource source) {
+        SourceParser parser = new SourceParser(source.modulePath, source.input, this.config);
+        try {
+            parser.loadFunctions();
+        } catch (Exception e) {
+            this.logger.info(MessageFormat.format("No functions found in {0}",
+                    parser.pyModule.nameWithExt));
+            return null;
+        }
+
+        // skipping modules with only non-testable functions
+        if (parser.pyModule.functions.size() == 0) {
+            return null;
+        }
+        return parser.pyModule;
+    }
+
+    private RenderedModule renderModule(PyModule pyModule) {
+        Path path = Paths.get(pyModule.baseDir, this.config.testOutputDirName,
+                this.config.testModulePrefix + pyModule.nameWithExt);
+        this.logger.info(MessageFormat.format("Processing the source code of {0}",
+                Paths.get(pyModule.baseDir, pyModule.nameWithExt)));
+        PyWriter writer = new PyWriter(this.config, pyModule, path);
+        return new RenderedModule(path, writer.renderTestsModule().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Void writeModule(RenderedModule module) throws Exception {
+        Files.write(module.outFilePath, module.contents);
+        return null;
+    }
+
+    /**
+     * Source code of a module opened from disk.
+     */
+    static final class ModuleSource {
+        final String modulePath;
+        final CharStream input;
+
+        ModuleSource(String modulePath, CharStream input) {
+            this.modulePath = modulePath;
+            this.input = input;
+        }
+    }
+
+    /**
+     * Contents of a test module ready to be written on disk.
+     */
+    static final class RenderedModule {
+        final Path outFilePath;
+        final byte[] contents;
+
+        RenderedModule(Path outFilePath, byte[] contents) {
+            this.outFilePath = outFilePath;
+            this.contents = contents;
+        }
+    }
+
+    @FunctionalInterface
+    interface StageFunction<I, O> {
+        /**
+         * Process an item; returning null drops the item from the pipeline.
+         */
+        O apply(I item) throws Exception;
+    }
+
+    /**
+     * A pipeline stage: a pool of workers taking items from a bounded input queue
+     * and passing the results on to the input queue of the next stage.
+     */
+    static final class Stage<I, O> {
+        final String name;
+        final int threads;
+        final int capacity;
+        private final StageFunction<I, O> function;
+        private final Stage<O, ?> next;
+        private final BlockingQueue<Object> queue;
+        private final ExecutorService executor;
+        private final AtomicInteger activeWorkers;
+        private final Logger logger;
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicInteger maxQueueDepth = new AtomicInteger();
+        final AtomicLong inputWaitNanos = new AtomicLong();
+        final AtomicLong outputBlockedNanos = new AtomicLong();
+
+        Stage(String name, int threads, long stackBytes, int capacity, StageFunction<I, O> function,
+              Stage<O, ?> next, Logger logger) {
+            this.name = name;
+            this.threads = threads;
+            this.capacity = capacity;
+            this.function = function;
+            this.next = next;
+            this.logger = logger;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory(name, stackBytes));
+            this.activeWorkers = new AtomicInteger(threads);
+        }
+
+        void start() {
+            for (int i = 0; i < this.threads; i++) {
+                this.executor.execute(this::work);
+            }
+            this.executor.shutdown();
+        }
+
+        /**
+         * Put an item into the stage input queue, blocking while the queue is full.
+         */
+        void offer(Object item) throws InterruptedException {
+            this.queue.put(item);
+            int depth = this.queue.size();
+            this.maxQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        /**
+         * Signal every worker of the stage that no more input will arrive.
+         */
+        void endInput() throws InterruptedException {
+            for (int i = 0; i < this.threads; i++) {
+                this.queue.put(END_OF_INPUT);
+            }
+        }
+
+        void awaitTermination() throws InterruptedException {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void work() {
+            try {
+                while (true) {
+                    long waitStart = System.nanoTime();
+                    Object item = this.queue.take();
+                    this.inputWaitNanos.addAndGet(System.nanoTime() - waitStart);
+                    if (item == END_OF_INPUT) {
+                        break;
+                    }
+
+                    O result;
+                    try {
+                        result = this.function.apply((I) item);
+                        this.processed.incrementAndGet();
+                    } catch (Exception | StackOverflowError e) {
+                        this.failed.incrementAndGet();
+                        this.logger.warning(MessageFormat.format(
+                                "Stage {0} failed to process an item: {1}", this.name, e.getMessage()));
+                        continue;
+                    }
+
+                    if (result != null && this.next != null) {
+                        long blockedStart = System.nanoTime();
+                        this.next.offer(result);
+                        this.outputBlockedNanos.addAndGet(System.nanoTime() - blockedStart);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (this.activeWorkers.decrementAndGet() == 0 && this.next != null) {
+                    try {
+                        this.next.endInput();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        String statistics() {
+            return MessageFormat.format(
+                    "Stage {0} ({1} threads): {2} processed, {3} failed, max queue depth {4}/{5}, "
+                            + "waited for input {6} ms, blocked on output {7} ms",
+                    this.name, this.threads, this.processed.get(), this.failed.get(),
+                    this.maxQueueDepth.get(), this.capacity,
+                    TimeUnit.NANOSECONDS.toMillis(this.inputWaitNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(this.outputBlockedNanos.get()));
+        }
+    }
+}
@@ -1,21 +1,41 @@
 package com.scaffold.console;
 
+import com.scaffold.parser.DfaCache;
+import com.scaffold.parser.DfaSnapshot;
+import com.scaffold.parser.FileInputParser;
+import com.scaffold.parser.ModulePrefilter;
+import com.scaffold.parser.ParseDiagnostic;
+import com.scaffold.parser.ParseTimings;
+import com.scaffold.parser.ParserProfile;
 import com.scaffold.parser.SourceParser;
 import com.scaffold.writer.PyWriter;
 import com.scaffold.writer.PyWriterConfig;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.Iterator;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
-import static com.scaffold.console.Definitions.ABBREV_TEST_LOCATION_BESIDE_SOURCE;
-import static com.scaffold.console.Definitions.ABBREV_TEST_LOCATION_NEW_FOLDER;
+import static com.scaffold.console.Definitions.*;
 
 public class Runner {
+    // modules handed over to a parse thread of the pool and not processed yet, per thread
+    static final int PENDING_MODULES_PER_THREAD = 2;
+
     public final PyWriterConfig config;
     public final Scanner scanner;
     public final Logger logger;
@@ -28,6 +48,7 @@ public class Runner {
 
     public static void main(String[] args) throws Exception {
         Runner runner = new Runner();
+        runner.loadOptions(args);
         System.out.println(UserPrompt.modules);
         String modulePathsInput = runner.scanner.nextLine();
         while (modulePathsInput.isEmpty()) {
@@ -109,42 +130,298 @@ public class Runner {
         runner.generateTests();
     }
 
+    /**
+     * Load non-interactive options passed on the command line as `--name=value`.
+     */
+    public void loadOptions(String[] args) {
+        if (args == null) {
+            return;
+        }
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            String value = option.length > 1 ? option[1] : "";
+            switch (option[0]) {
+                case OPTION_PARALLELISM:
+                    this.config.loadParallelism(value);
+                    break;
+                case OPTION_PIPELINE:
+                    this.config.loadPipeline(value);
+                    break;
+                case OPTION_PIPELINE_QUEUE_CAPACITY:
+                    this.config.loadPipelineQueueCapacity(value);
+                    break;
+                case OPTION_PIPELINE_READ_THREADS:
+                    this.config.loadPipelineReadThreads(value);
+                    break;
+                case OPTION_PIPELINE_PARSE_THREADS:
+                    this.config.loadPipelineParseThreads(value);
+                    break;
+                case OPTION_PIPELINE_RENDER_THREADS:
+                    this.config.loadPipelineRenderThreads(value);
+                    break;
+                case OPTION_PIPELINE_WRITE_THREADS:
+                    this.config.loadPipelineWriteThreads(value);
+                    break;
+                case OPTION_PARSE_MODE:
+                    this.config.loadParseMode(value);
+                    break;
+                case OPTION_DFA_CACHE_MAX_MB:
+                    this.config.loadDfaCacheMaxSize(value);
+                    break;
+                case OPTION_EXTRACTION_ENGINE:
+                    this.config.loadExtractionEngine(value);
+                    break;
+                case OPTION_RECOVER:
+                    this.config.loadRecoverFromErrors(value);
+                    break;
+                case OPTION_CHUNK_THRESHOLD_KB:
+                    this.config.loadChunkThreshold(value);
+                    break;
+                case OPTION_REUSE_PARSERS:
+                    this.config.loadReuseParsers(value);
+                    break;
+                case OPTION_COMPACT_TOKENS:
+                    this.config.loadCompactTokens(value);
+                    break;
+                case OPTION_PARSE_STACK_MB:
+                    this.config.loadParseStackSize(value);
+                    break;
+                case OPTION_PARSE_TIMEOUT_MS:
+                    this.config.loadParseTimeout(value);
+                    break;
+                case OPTION_PREFILTER:
+                    this.config.loadPrefilter(value);
+                    break;
+                case OPTION_GENERATED_MARKERS:
+                    this.config.loadGeneratedMarkers(value);
+                    break;
+                case OPTION_MAX_MODULE_KB:
+                    this.config.loadMaxModuleSize(value);
+                    break;
+                case OPTION_PROFILE_REPORT:
+                    this.config.loadProfileReport(value);
+                    break;
+                case OPTION_DFA_SNAPSHOT:
+                    this.config.loadDfaSnapshot(value);
+                    break;
+                case OPTION_GITIGNORE:
+                    this.config.loadGitIgnore(value);
+                    break;
+                case OPTION_STREAM_MODULES:
+                    this.config.loadStreamModules(value);
+                    break;
+                case OPTION_SORT_MODULES:
+                    this.config.loadSortModules(value);
+                    break;
+                case OPTION_CHANGED_SINCE:
+                    this.config.loadChangedSince(value);
+                    break;
+                default:
+                    this.logger.info(MessageFormat.format("Unknown option {0} is ignored", arg));
+            }
+        }
+    }
+
     /**
      * Generate the tests code and save modules with this code on disk.
      */
     public void generateTests() throws Exception {
         this.logger.info("Starting!");
+        this.restoreDfaSnapshot();
 
-        for (String modulePath : this.config.modulePaths) {
-            this.logger.info(MessageFormat.format("Reading the source code of {0}", modulePath));
-            SourceParser parser = new SourceParser(modulePath);
+        if (this.config.pipeline) {
+            try (Stream<String> modules = this.config.modules()) {
+                new GenerationPipeline(this.config, this.logger).run(modules::iterator);
+            }
+        } else if (this.config.parallelism > 1) {
+            this.generateTestsInParallel();
+        } else {
+            this.generateTestsSequentially();
+        }
 
-            Path destDir = Paths.get(parser.pyModule.baseDir, this.config.testOutputDirName);
-            if (!Files.exists(destDir)) {
-                (new File(destDir.toString())).mkdirs();
+        if (ModulePrefilter.skippedModules() > 0) {
+            this.logger.info(ModulePrefilter.statistics());
+        }
+        String diagnostics = ParseDiagnostic.report();
+        if (diagnostics != null) {
+            this.logger.warning(diagnostics);
+        }
+        this.logger.info(FileInputParser.statistics());
+        if (this.config.chunkThresholdChars > 0) {
+            this.logger.info(SourceParser.chunkStatistics());
+        }
+        if (SourceParser.overflowedModules.get() + SourceParser.timedOutModules.get() > 0) {
+            this.logger.warning(SourceParser.fallbackStatistics());
+        }
+        String timings = ParseTimings.report();
+        if (timings != null) {
+            this.logger.info(timings);
+        }
+        String warmUp = ParseTimings.warmUpStatistics();
+        if (warmUp != null) {
+            this.logger.info(warmUp);
+        }
+        this.logger.info(DfaCache.statistics().toString(10));
+        String profile = ParserProfile.report();
+        if (profile != null) {
+            Files.write(Paths.get(this.config.profileReportPath), profile.getBytes(StandardCharsets.UTF_8));
+            this.logger.info(MessageFormat.format("Profile of the parser decisions written to {0}",
+                    this.config.profileReportPath));
+        }
+        this.saveDfaSnapshot();
+        this.logger.info("Complete!");
+    }
+
+    /**
+     * Warm up the parser with the DFA snapshot of the previous run, if there is one.
+     */
+    private void restoreDfaSnapshot() {
+        if (this.config.dfaSnapshotPath == null || !Files.isRegularFile(Paths.get(this.config.dfaSnapshotPath))) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int states = DfaSnapshot.restore(Paths.get(this.config.dfaSnapshotPath));
+            if (states < 0) {
+                this.logger.warning(MessageFormat.format("The DFA snapshot {0} has been made for another "
+                        + "version of the grammar and is discarded", this.config.dfaSnapshotPath));
+            } else {
+                this.logger.info(MessageFormat.format("Restored {0} DFA states from {1} in {2} ms", states,
+                        this.config.dfaSnapshotPath, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
             }
-            try {
-                parser.loadFunctions();
-            } catch (Exception e) {
-                this.logger.info(MessageFormat.format("No functions found in {0}",
-                        parser.pyModule.nameWithExt));
-                continue;
+        } catch (IOException e) {
+            this.logger.warning(MessageFormat.format("The DFA snapshot {0} cannot be restored: {1}",
+                    this.config.dfaSnapshotPath, e.getMessage()));
+        }
+    }
+
+    /**
+     * Save the DFA warmed up by this run for the next one.
+     */
+    private void saveDfaSnapshot() {
+        if (this.config.dfaSnapshotPath == null) {
+            return;
+        }
+        try {
+            int states = DfaSnapshot.save(Paths.get(this.config.dfaSnapshotPath));
+            this.logger.info(MessageFormat.format("Saved {0} DFA states to {1}", states,
+                    this.config.dfaSnapshotPath));
+        } catch (IOException e) {
+            this.logger.warning(MessageFormat.format("The DFA snapshot {0} cannot be saved: {1}",
+                    this.config.dfaSnapshotPath, e.getMessage()));
+        }
+    }
+
+    /**
+     * Process modules one after another on a single parse thread.
+     */
+    private void generateTestsSequentially() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new WorkerThreadFactory("parse", this.config.parseStackBytes));
+        try {
+            executor.submit(() -> {
+                try (Stream<String> modules = this.config.modules()) {
+                    for (String modulePath : (Iterable<String>) modules::iterator) {
+                        this.processModule(modulePath);
+                    }
+                }
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
             }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Process modules on a pool of parse threads. A failure of one module is logged
+     * and does not stop processing of the other modules.
+     */
+    private void generateTestsInParallel() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.config.parallelism,
+                new WorkerThreadFactory("parse", this.config.parseStackBytes));
+        try (Stream<String> modules = this.config.modules()) {
+            executeBounded(modules::iterator, executor, PENDING_MODULES_PER_THREAD * this.config.parallelism,
+                    modulePath -> {
+                        try {
+                            this.processModule(modulePath);
+                        } catch (Exception e) {
+                            this.logger.warning(MessageFormat.format("Failed to process {0}: {1}",
+                                    modulePath, e.getMessage()));
+                        }
+                    });
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
 
-            // skipping modules with only non-testable functions
-            if (parser.pyModule.functions.size() == 0) {
-                continue;
+    /**
+     * Run the task for every module on the executor, taking the next module only once fewer than
+     * the given number of modules are waiting for the executor or being processed, so the streamed
+     * modules are never taken further ahead of the processing.
+     */
+    static void executeBounded(Iterable<String> modules, ExecutorService executor, int pending,
+                               Consumer<String> task) throws InterruptedException {
+        Semaphore permits = new Semaphore(pending);
+        Iterator<String> iterator = modules.iterator();
+        while (true) {
+            permits.acquire();
+            if (!iterator.hasNext()) {
+                return;
             }
+            String modulePath = iterator.next();
+            executor.execute(() -> {
+                try {
+                    task.accept(modulePath);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
 
-            Path path = Paths.get(destDir.toString(),
-                    this.config.testModulePrefix + parser.pyModule.nameWithExt);
+    /**
+     * Parse a single source module and write the test module for it.
+     */
+    private void processModule(String modulePath) throws Exception {
+        this.logger.info(MessageFormat.format("Reading the source code of {0}", modulePath));
+        ByteBuffer source = SourceParser.readSourceCode(modulePath);
+        SkipReason reason = ModulePrefilter.check(source, this.config);
+        if (reason != null) {
+            this.logger.info(MessageFormat.format("Skipping {0}: {1}", modulePath, reason));
+            return;
+        }
+        SourceParser parser = new SourceParser(modulePath, SourceParser.openSourceCode(modulePath, source),
+                this.config);
 
-            this.logger.info(MessageFormat.format("Processing the source code of {0}", modulePath));
-            PyWriter writer = new PyWriter(this.config, parser.pyModule, path);
-            writer.writeTestsModule();
+        Path destDir = Paths.get(parser.pyModule.baseDir, this.config.testOutputDirName);
+        if (!Files.exists(destDir)) {
+            (new File(destDir.toString())).mkdirs();
+        }
+        try {
+            parser.loadFunctions();
+        } catch (Exception e) {
+            this.logger.info(MessageFormat.format("No functions found in {0}",
+                    parser.pyModule.nameWithExt));
+            return;
         }
 
-        this.logger.info("Complete!");
+        // skipping modules with only non-testable functions
+        if (parser.pyModule.functions.size() == 0) {
+            return;
+        }
+
+        Path path = Paths.get(destDir.toString(),
+                this.config.testModulePrefix + parser.pyModule.nameWithExt);
+
+        this.logger.info(MessageFormat.format("Processing the source code of {0}", modulePath));
+        PyWriter writer = new PyWriter(this.config, parser.pyModule, path);
+        writer.writeTestsModule();
     }
 
 }
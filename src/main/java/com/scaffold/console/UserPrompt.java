@@ -11,12 +11,12 @@ public class UserPrompt {
     public static final String modules = "Enter path to the modules, semicolon separated:\n> ";
 
     public static final String foldersToIgnore = MessageFormat.format(
-            "Enter folder names to ignore, semicolon separated. Default is {0}.\n>",
+            "Enter folder names or glob patterns to ignore, semicolon separated. Default is {0}.\n>",
             PyWriterConfig.foldersToIgnoreDefault);
 
     public static final String foldersToProcessMissing = "No path is provided. Try again:\n> ";
 
-    public static final String moduleNamePatternsToIgnore = "Enter module name patterns to ignore.\n> ";
+    public static final String moduleNamePatternsToIgnore = "Enter module name patterns or glob patterns to ignore.\n> ";
 
     public static final String testLocation = MessageFormat.format(
             "Where do you want to store output test modules?\n"
@@ -0,0 +1,32 @@
+package com.scaffold.console;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of the daemon worker threads processing the modules.
+ * The threads parsing the modules are given a large stack, because the recursive-descent parser
+ * goes about five rules deeper for every level of nesting of an expression.
+ */
+public class WorkerThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final long stackBytes;
+    private final AtomicInteger created = new AtomicInteger();
+
+    /**
+     * Create a factory of threads with the given stack size, 0 meaning the default of the JVM.
+     */
+    public WorkerThreadFactory(String name, long stackBytes) {
+        this.name = name;
+        this.stackBytes = stackBytes;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(null, runnable,
+                "pybutler-" + this.name + "-" + this.created.incrementAndGet(), this.stackBytes);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
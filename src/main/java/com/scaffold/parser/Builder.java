@@ -10,6 +10,8 @@ import org.antlr.v4.runtime.ANTLRErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
@@ -61,12 +63,18 @@ public final class Builder {
             lexer.removeErrorListeners();
             lexer.addErrorListener(ERROR_LISTENER);
             this.parser = new Python3Parser(new CommonTokenStream(lexer));
+            DfaCache.attach(this.parser);
             this.parser.removeErrorListeners();
             this.parser.addErrorListener(ERROR_LISTENER);
         }
 
-        public Parser(Python3Lexer lexer) {
-            this.parser = new Python3Parser(new CommonTokenStream(lexer));
+        public Parser(TokenSource tokenSource) {
+            this(new CommonTokenStream(tokenSource));
+        }
+
+        public Parser(TokenStream tokens) {
+            this.parser = new Python3Parser(tokens);
+            DfaCache.attach(this.parser);
             this.parser.removeErrorListeners();
             this.parser.addErrorListener(ERROR_LISTENER);
         }
@@ -0,0 +1,99 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Character stream reading an 8-bit encoded source directly from a byte buffer
+ * (which can be a memory-mapped file), one byte per character, without copying the source.
+ */
+public final class ByteBufferCharStream implements CharStream {
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int size;
+    private final String name;
+    private int position = 0;
+
+    /**
+     * Create a stream of the bytes of the buffer from its position to its limit.
+     */
+    public ByteBufferCharStream(ByteBuffer buffer, String name) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+        this.size = buffer.remaining();
+        this.name = name;
+    }
+
+    @Override
+    public void consume() {
+        if (this.position >= this.size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        this.position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0; // undefined
+        }
+        int offset = i > 0 ? this.position + i - 1 : this.position + i;
+        if (offset < 0 || offset >= this.size) {
+            return IntStream.EOF;
+        }
+        return this.buffer.get(this.start + offset) & 0xFF;
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return this.position;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.position = index;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return this.name == null || this.name.isEmpty() ? UNKNOWN_SOURCE_NAME : this.name;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int from = Math.min(interval.a, this.size);
+        int length = Math.min(interval.b - interval.a + 1, this.size - from);
+        if (length <= 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(this.start + from);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return this.getText(Interval.of(0, this.size - 1));
+    }
+}
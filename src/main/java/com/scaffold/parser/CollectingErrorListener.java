@@ -0,0 +1,28 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An error listener that lets the lexer and the parser recover from syntax errors
+ * and collects the errors as diagnostics.
+ */
+public class CollectingErrorListener extends BaseErrorListener {
+
+    public final List<ParseDiagnostic> diagnostics = new ArrayList<>();
+    private final String sourceName;
+
+    public CollectingErrorListener(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                            int charPositionInLine, String msg, RecognitionException e) {
+        this.diagnostics.add(new ParseDiagnostic(this.sourceName, line, charPositionInLine, msg));
+    }
+}
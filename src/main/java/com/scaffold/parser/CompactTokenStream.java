@@ -0,0 +1,267 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.Arrays;
+
+/**
+ * Token stream keeping the tokens of the default channel in parallel arrays of primitives
+ * instead of a list of token objects, the same way {@link org.antlr.v4.runtime.CommonTokenStream} does.
+ * The token objects are created only when the parser asks for them (mostly for the leaves of
+ * the parse tree); the lookahead of the prediction uses the token types only.
+ * The text of a token is not kept, it is read from the character stream when needed.
+ */
+public class CompactTokenStream implements TokenStream {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // the number of recently created token objects which are handed out again
+    private static final int CACHE_SIZE = 64;
+
+    private final TokenSource tokenSource;
+    private final Pair<TokenSource, CharStream> source;
+    private final int channel = Token.DEFAULT_CHANNEL;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] stops = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] columns = new int[INITIAL_CAPACITY];
+    private int[] channels = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private boolean fetchedEOF = false;
+    private int p = -1;
+
+    private final Token[] cache = new Token[CACHE_SIZE];
+
+    public CompactTokenStream(TokenSource tokenSource) {
+        this.tokenSource = tokenSource;
+        this.source = new Pair<>(tokenSource, tokenSource.getInputStream());
+    }
+
+    @Override
+    public TokenSource getTokenSource() {
+        return this.tokenSource;
+    }
+
+    @Override
+    public String getSourceName() {
+        return this.tokenSource.getSourceName();
+    }
+
+    @Override
+    public int index() {
+        return this.p;
+    }
+
+    @Override
+    public int mark() {
+        return 0;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public void seek(int index) {
+        this.lazyInit();
+        this.p = this.nextTokenOnChannel(index);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void consume() {
+        boolean skipEofCheck = this.p >= 0 && (this.fetchedEOF ? this.p < this.size - 1 : this.p < this.size);
+        if (!skipEofCheck && this.LA(1) == EOF) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        if (this.sync(this.p + 1)) {
+            this.p = this.nextTokenOnChannel(this.p + 1);
+        }
+    }
+
+    @Override
+    public int LA(int i) {
+        int index = this.lookIndex(i);
+        return index < 0 ? Token.INVALID_TYPE : this.types[index];
+    }
+
+    @Override
+    public Token LT(int k) {
+        int index = this.lookIndex(k);
+        return index < 0 ? null : this.get(index);
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("token index " + index + " out of range 0.." + (this.size - 1));
+        }
+        Token token = this.cache[index % CACHE_SIZE];
+        if (token == null || token.getTokenIndex() != index) {
+            CommonToken created = new CommonToken(this.source, this.types[index], this.channels[index],
+                    this.starts[index], this.stops[index]);
+            created.setLine(this.lines[index]);
+            created.setCharPositionInLine(this.columns[index]);
+            created.setTokenIndex(index);
+            token = created;
+            this.cache[index % CACHE_SIZE] = token;
+        }
+        return token;
+    }
+
+    @Override
+    public String getText() {
+        this.fill();
+        return this.getText(Interval.of(0, this.size - 1));
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        this.lazyInit();
+        int start = interval.a;
+        int stop = interval.b;
+        if (start < 0 || stop < 0) {
+            return "";
+        }
+        this.sync(stop);
+        stop = Math.min(stop, this.size - 1);
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i <= stop && this.types[i] != EOF; i++) {
+            builder.append(this.get(i).getText());
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String getText(RuleContext ctx) {
+        return this.getText(ctx.getSourceInterval());
+    }
+
+    @Override
+    public String getText(Token start, Token stop) {
+        if (start == null || stop == null) {
+            return "";
+        }
+        return this.getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+    }
+
+    /**
+     * Get all tokens from the token source.
+     */
+    public void fill() {
+        this.lazyInit();
+        while (!this.fetchedEOF) {
+            this.fetch(INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Get the index of the k-th token of the channel looking ahead (k > 0) or behind (k < 0).
+     */
+    private int lookIndex(int k) {
+        this.lazyInit();
+        if (k == 0) {
+            return -1;
+        }
+        int i = this.p;
+        if (k < 0) {
+            if (this.p + k < 0) {
+                return -1;
+            }
+            for (int n = 1; n <= -k && i > 0; n++) {
+                i = this.previousTokenOnChannel(i - 1);
+            }
+            return i;
+        }
+        for (int n = 1; n < k; n++) {
+            if (this.sync(i + 1)) {
+                i = this.nextTokenOnChannel(i + 1);
+            }
+        }
+        return i;
+    }
+
+    private void lazyInit() {
+        if (this.p == -1) {
+            this.sync(0);
+            this.p = this.nextTokenOnChannel(0);
+        }
+    }
+
+    /**
+     * Make sure the token at the index has been fetched, returning false if there is no such token.
+     */
+    private boolean sync(int i) {
+        int missing = i - this.size + 1;
+        if (missing > 0) {
+            this.fetch(missing);
+        }
+        return i < this.size;
+    }
+
+    private void fetch(int n) {
+        for (int i = 0; i < n && !this.fetchedEOF; i++) {
+            Token token = this.tokenSource.nextToken();
+            if (this.size == this.types.length) {
+                int capacity = this.size + (this.size >> 1);
+                this.types = Arrays.copyOf(this.types, capacity);
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.stops = Arrays.copyOf(this.stops, capacity);
+                this.lines = Arrays.copyOf(this.lines, capacity);
+                this.columns = Arrays.copyOf(this.columns, capacity);
+                this.channels = Arrays.copyOf(this.channels, capacity);
+            }
+            this.types[this.size] = token.getType();
+            this.starts[this.size] = token.getStartIndex();
+            this.stops[this.size] = token.getStopIndex();
+            this.lines[this.size] = token.getLine();
+            this.columns[this.size] = token.getCharPositionInLine();
+            this.channels[this.size] = token.getChannel();
+            this.size++;
+            if (token.getType() == EOF) {
+                this.fetchedEOF = true;
+            }
+        }
+    }
+
+    private int nextTokenOnChannel(int i) {
+        this.sync(i);
+        if (i >= this.size) {
+            return this.size - 1;
+        }
+        while (this.channels[i] != this.channel) {
+            if (this.types[i] == EOF) {
+                return i;
+            }
+            i++;
+            this.sync(i);
+        }
+        return i;
+    }
+
+    private int previousTokenOnChannel(int i) {
+        this.sync(i);
+        if (i >= this.size) {
+            return this.size - 1;
+        }
+        while (i >= 0) {
+            if (this.types[i] == EOF || this.channels[i] == this.channel) {
+                return i;
+            }
+            i--;
+        }
+        return i;
+    }
+}
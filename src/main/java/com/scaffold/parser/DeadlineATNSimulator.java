@@ -0,0 +1,46 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+
+/**
+ * Prediction of the parser that gives up once the deadline of the module has passed.
+ * The deadline is checked on every step of the lookahead that misses the DFA cache, which is
+ * where the full-context prediction spends its time on pathological input, and once in a few
+ * hundred decisions otherwise, so the parsing is cancelled without a thread being interrupted.
+ */
+class DeadlineATNSimulator extends ParserATNSimulator {
+
+    private static final int DECISIONS_PER_CHECK = 256;
+
+    private final long deadlineNanos;
+    private int decisions = 0;
+
+    DeadlineATNSimulator(Python3Parser parser, PredictionContextCache contextCache, long deadlineNanos) {
+        super(parser, parser.getATN(), Python3Parser._decisionToDFA, contextCache);
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public int adaptivePredict(TokenStream input, int decision, ParserRuleContext outerContext) {
+        if (++this.decisions % DECISIONS_PER_CHECK == 0) {
+            this.checkDeadline(input);
+        }
+        return super.adaptivePredict(input, decision, outerContext);
+    }
+
+    @Override
+    protected ATNConfigSet computeReachSet(ATNConfigSet closure, int t, boolean fullCtx) {
+        this.checkDeadline(this.parser.getInputStream());
+        return super.computeReachSet(closure, t, fullCtx);
+    }
+
+    private void checkDeadline(TokenStream input) {
+        if (System.nanoTime() - this.deadlineNanos > 0) {
+            throw new ParseTimeoutException("Parsing of " + input.getSourceName() + " ran out of time");
+        }
+    }
+}
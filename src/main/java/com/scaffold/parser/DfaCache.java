@@ -0,0 +1,239 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Management of the DFA caches shared by all instances of the ANTLR lexer and parser.
+ * The caches make the prediction fast once they are warmed up, but ANTLR never releases them,
+ * so they keep growing while heterogeneous code is being parsed.
+ * The sizes reported are estimates based on the typical layout of the cached objects.
+ */
+public final class DfaCache {
+
+    // approximate sizes (in bytes) of the cached objects on a 64-bit JVM with compressed oops
+    static final int STATE_BYTES = 40 + 32 + 48 + 40; // DFAState, map entry, ATNConfigSet, config list
+    static final int EDGE_BYTES = 4;
+    static final int CONFIG_BYTES = 32 + 4;
+    static final int CONTEXT_BYTES = 48;
+
+    // the policy estimates the cache size only once per this number of parsed modules
+    static final int CHECK_INTERVAL = 64;
+
+    private static volatile PredictionContextCache contextCache = new PredictionContextCache();
+    private static final AtomicLong parsedModules = new AtomicLong();
+    private static final AtomicLong trims = new AtomicLong();
+    // the parses share the caches, the caches are only dropped while none is running
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private DfaCache() {
+    }
+
+    /**
+     * Make the parser predict with the shared DFA and the context cache managed here.
+     */
+    static void attach(Python3Parser parser) {
+        // a parser reused for another module could still have the deadline of the previous one
+        if (parser.getInterpreter().getClass() == ParserATNSimulator.class
+                && parser.getInterpreter().getSharedContextCache() == contextCache) {
+            return;
+        }
+        parser.setInterpreter(new ParserATNSimulator(parser, parser.getATN(),
+                Python3Parser._decisionToDFA, contextCache));
+    }
+
+    /**
+     * Get the lock to be held while a module is being parsed, so its predictions never run
+     * against decisions being dropped.
+     */
+    static Lock parsing() {
+        return lock.readLock();
+    }
+
+    /**
+     * Get current statistics of the caches.
+     */
+    public static Statistics statistics() {
+        int decisions = Python3Parser._decisionToDFA.length;
+        int[] decisionStates = new int[decisions];
+        long[] decisionBytes = new long[decisions];
+        for (int decision = 0; decision < decisions; decision++) {
+            DFA dfa = Python3Parser._decisionToDFA[decision];
+            synchronized (dfa.states) {
+                decisionStates[decision] = dfa.states.size();
+                decisionBytes[decision] = estimateBytes(dfa);
+            }
+        }
+
+        int lexerStates = 0;
+        long lexerBytes = 0;
+        for (DFA dfa : Python3Lexer._decisionToDFA) {
+            synchronized (dfa.states) {
+                lexerStates += dfa.states.size();
+                lexerBytes += estimateBytes(dfa);
+            }
+        }
+
+        int contexts = contextCache.size();
+        return new Statistics(decisionStates, decisionBytes, lexerStates, lexerBytes, contexts,
+                (long) contexts * CONTEXT_BYTES, trims.get());
+    }
+
+    /**
+     * Drop all cached DFA states of the lexer and the parser.
+     * Waits for the modules being parsed, so it must not be called while parsing.
+     */
+    public static void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int decision = 0; decision < Python3Parser._decisionToDFA.length; decision++) {
+                resetParserDecision(decision);
+            }
+            for (int decision = 0; decision < Python3Lexer._decisionToDFA.length; decision++) {
+                Python3Lexer._decisionToDFA[decision] = new DFA(Python3Lexer._ATN.getDecisionState(decision),
+                        decision);
+            }
+            contextCache = new PredictionContextCache();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the DFA states of the largest parser decisions until the estimated size of the
+     * caches is at most half of the limit, keeping the small (and typically hot) decisions warm.
+     * Waits for the modules being parsed if the caches are over the limit, so it must not be called while parsing.
+     */
+    public static void trim(long maxBytes) {
+        // the caches are estimated while the modules are being parsed, the parses only wait for a trim
+        if (statistics().estimatedBytes() <= maxBytes) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // the caches may have been trimmed meanwhile
+            Statistics statistics = statistics();
+            long bytes = statistics.estimatedBytes();
+            if (bytes <= maxBytes) {
+                return;
+            }
+            trims.incrementAndGet();
+
+            // the context cache only deduplicates contexts, the states still in use keep theirs
+            bytes -= statistics.contextBytes;
+            contextCache = new PredictionContextCache();
+
+            Integer[] decisions = IntStream.range(0, statistics.decisionStates.length).boxed()
+                    .toArray(Integer[]::new);
+            Arrays.sort(decisions, Comparator.comparingLong(d -> -statistics.decisionBytes[d]));
+            for (int decision : decisions) {
+                if (bytes <= maxBytes / 2) {
+                    break;
+                }
+                resetParserDecision(decision);
+                bytes -= statistics.decisionBytes[decision];
+            }
+            if (bytes > maxBytes / 2) {
+                clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the size limit of the caches after a module has been parsed.
+     * A limit of zero or less means the caches are unbounded.
+     */
+    public static void enforce(long maxBytes) {
+        if (maxBytes > 0 && parsedModules.incrementAndGet() % CHECK_INTERVAL == 0) {
+            trim(maxBytes);
+        }
+    }
+
+    private static void resetParserDecision(int decision) {
+        Python3Parser._decisionToDFA[decision] = new DFA(Python3Parser._ATN.getDecisionState(decision),
+                decision);
+    }
+
+    private static long estimateBytes(DFA dfa) {
+        long bytes = 0;
+        for (DFAState state : dfa.states.keySet()) {
+            bytes += STATE_BYTES;
+            if (state.edges != null) {
+                bytes += 16 + (long) state.edges.length * EDGE_BYTES;
+            }
+            if (state.configs != null) {
+                bytes += (long) state.configs.size() * CONFIG_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Snapshot of the cache statistics.
+     */
+    public static final class Statistics {
+        public final int[] decisionStates;
+        public final long[] decisionBytes;
+        public final int lexerStates;
+        public final long lexerBytes;
+        public final int contexts;
+        public final long contextBytes;
+        public final long trims;
+
+        Statistics(int[] decisionStates, long[] decisionBytes, int lexerStates, long lexerBytes,
+                   int contexts, long contextBytes, long trims) {
+            this.decisionStates = decisionStates;
+            this.decisionBytes = decisionBytes;
+            this.lexerStates = lexerStates;
+            this.lexerBytes = lexerBytes;
+            this.contexts = contexts;
+            this.contextBytes = contextBytes;
+            this.trims = trims;
+        }
+
+        public int parserStates() {
+            return Arrays.stream(this.decisionStates).sum();
+        }
+
+        public long estimatedBytes() {
+            return Arrays.stream(this.decisionBytes).sum() + this.lexerBytes + this.contextBytes;
+        }
+
+        /**
+         * Get summary of the statistics listing the decisions with the most DFA states.
+         */
+        public String toString(int topDecisions) {
+            StringBuilder builder = new StringBuilder(MessageFormat.format(
+                    "DFA cache: {0} parser states, {1} lexer states, {2} cached contexts, "
+                            + "~{3} KB, trimmed {4} times",
+                    this.parserStates(), this.lexerStates, this.contexts,
+                    this.estimatedBytes() / 1024, this.trims));
+            IntStream.range(0, this.decisionStates.length).boxed()
+                    .filter(d -> this.decisionStates[d] > 0)
+                    .sorted(Comparator.comparingInt(d -> -this.decisionStates[d]))
+                    .limit(topDecisions)
+                    .forEach(d -> builder.append(MessageFormat.format(
+                            "{0}  decision {1} ({2}): {3} states, ~{4} KB", System.lineSeparator(), d,
+                            Python3Parser.ruleNames[Python3Parser._ATN.getDecisionState(d).ruleIndex],
+                            this.decisionStates[d], this.decisionBytes[d] / 1024)));
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return this.toString(0);
+        }
+    }
+}
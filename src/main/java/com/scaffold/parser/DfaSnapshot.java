@@ -0,0 +1,429 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.RuntimeMetaData;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.ArrayPredictionContext;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot of the warmed up DFA of the parser decisions, saved at the end of a run and restored
+ * at the start of the next one, so the first modules are not predicted through the ATN again.
+ * Every DFA state is saved with its ATN configurations, which the prediction goes on from when it
+ * meets a token the state has no edge for yet. The snapshot is tied to the grammar by a checksum
+ * of the serialized ATN and the ANTLR version, and a snapshot of another grammar is never restored.
+ * The lexer DFA is not saved, it is warmed up by the first few modules anyway.
+ */
+public final class DfaSnapshot {
+
+    static final int MAGIC = 0x50594446; // "PYDF"
+    static final int VERSION = 1;
+
+    private static final int NO_STATE = -1;
+    private static final int ERROR_STATE = -2;
+    private static final int NO_CONTEXT = -1;
+
+    private static final int CONTEXT_EMPTY = 0;
+    private static final int CONTEXT_SINGLETON = 1;
+    private static final int CONTEXT_ARRAY = 2;
+
+    private static final int SEMANTIC_NONE = 0;
+    private static final int SEMANTIC_PREDICATE = 1;
+    private static final int SEMANTIC_PRECEDENCE = 2;
+    private static final int SEMANTIC_AND = 3;
+    private static final int SEMANTIC_OR = 4;
+
+    private DfaSnapshot() {
+    }
+
+    /**
+     * Get the checksum of the grammar the DFA states belong to.
+     */
+    static long checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(Python3Parser._serializedATN.getBytes(StandardCharsets.UTF_8));
+        crc.update(RuntimeMetaData.VERSION.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Save the DFA states of all parser decisions to the file, replacing it once the snapshot is complete.
+     * Returns the number of states saved. No module should be parsed meanwhile.
+     */
+    public static synchronized int save(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        int states = 0;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+                states = write(out);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return states;
+    }
+
+    /**
+     * Replace the DFA states of all parser decisions with the ones of the snapshot.
+     * Returns the number of states restored, or -1 if the snapshot has been made for another grammar
+     * and has been discarded. Nothing is restored from a snapshot that cannot be read.
+     */
+    public static synchronized int restore(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum()) {
+                return -1;
+            }
+            DFA[] decisions = read(in);
+            int states = 0;
+            for (DFA dfa : decisions) {
+                Python3Parser._decisionToDFA[dfa.decision] = dfa;
+                states += dfa.states.size();
+            }
+            return states;
+        } catch (RuntimeException e) {
+            throw new IOException("The DFA snapshot " + path + " is malformed", e);
+        }
+    }
+
+    private static int write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checksum());
+
+        // the prediction contexts are shared by the configurations of all decisions, so they
+        // are written first, every context after its parents
+        DFA[] decisions = Python3Parser._decisionToDFA.clone();
+        List<List<DFAState>> decisionStates = new ArrayList<>();
+        Map<PredictionContext, Integer> contexts = new IdentityHashMap<>();
+        List<PredictionContext> contextOrder = new ArrayList<>();
+        for (DFA dfa : decisions) {
+            List<DFAState> states;
+            synchronized (dfa.states) {
+                states = new ArrayList<>(dfa.states.values());
+            }
+            for (DFAState state : states) {
+                for (ATNConfig config : state.configs) {
+                    collectContexts(config.context, contexts, contextOrder);
+                }
+            }
+            decisionStates.add(states);
+        }
+        out.writeInt(contextOrder.size());
+        for (PredictionContext context : contextOrder) {
+            if (context == PredictionContext.EMPTY) {
+                out.writeByte(CONTEXT_EMPTY);
+            } else if (context instanceof SingletonPredictionContext) {
+                out.writeByte(CONTEXT_SINGLETON);
+                out.writeInt(contextId(context.getParent(0), contexts));
+                out.writeInt(context.getReturnState(0));
+            } else {
+                out.writeByte(CONTEXT_ARRAY);
+                out.writeInt(context.size());
+                for (int i = 0; i < context.size(); i++) {
+                    out.writeInt(contextId(context.getParent(i), contexts));
+                    out.writeInt(context.getReturnState(i));
+                }
+            }
+        }
+
+        int total = 0;
+        out.writeInt(decisions.length);
+        for (int decision = 0; decision < decisions.length; decision++) {
+            DFA dfa = decisions[decision];
+            List<DFAState> states = decisionStates.get(decision);
+            Map<DFAState, Integer> ids = new IdentityHashMap<>();
+            for (DFAState state : states) {
+                ids.put(state, ids.size());
+            }
+            out.writeInt(states.size());
+            for (DFAState state : states) {
+                out.writeInt(state.stateNumber);
+                out.writeBoolean(state.isAcceptState);
+                out.writeInt(state.prediction);
+                out.writeBoolean(state.requiresFullContext);
+                out.writeBoolean(state.configs.hasSemanticContext);
+                out.writeBoolean(state.configs.dipsIntoOuterContext);
+                out.writeInt(state.configs.uniqueAlt);
+                out.writeInt(state.configs.size());
+                for (ATNConfig config : state.configs) {
+                    out.writeInt(config.state.stateNumber);
+                    out.writeInt(config.alt);
+                    out.writeInt(contexts.get(config.context));
+                    writeSemanticContext(out, config.semanticContext);
+                    out.writeInt(config.reachesIntoOuterContext);
+                }
+                if (state.predicates == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(state.predicates.length);
+                    for (DFAState.PredPrediction predicate : state.predicates) {
+                        writeSemanticContext(out, predicate.pred);
+                        out.writeInt(predicate.alt);
+                    }
+                }
+            }
+            // the edges can lead to the states added since the states were listed, they are left out
+            for (DFAState state : states) {
+                writeEdges(out, state.edges, ids);
+            }
+            DFAState start = dfa.s0;
+            if (dfa.isPrecedenceDfa()) {
+                writeEdges(out, start == null ? null : start.edges, ids);
+            } else {
+                out.writeInt(start == null ? NO_STATE : ids.getOrDefault(start, NO_STATE));
+            }
+            total += states.size();
+        }
+        return total;
+    }
+
+    private static DFA[] read(DataInputStream in) throws IOException {
+        ATN atn = Python3Parser._ATN;
+        PredictionContext[] contexts = new PredictionContext[in.readInt()];
+        for (int i = 0; i < contexts.length; i++) {
+            int type = in.readByte();
+            if (type == CONTEXT_EMPTY) {
+                contexts[i] = PredictionContext.EMPTY;
+            } else if (type == CONTEXT_SINGLETON) {
+                PredictionContext parent = context(contexts, in.readInt());
+                contexts[i] = SingletonPredictionContext.create(parent, in.readInt());
+            } else {
+                PredictionContext[] parents = new PredictionContext[in.readInt()];
+                int[] returnStates = new int[parents.length];
+                for (int j = 0; j < parents.length; j++) {
+                    parents[j] = context(contexts, in.readInt());
+                    returnStates[j] = in.readInt();
+                }
+                contexts[i] = new ArrayPredictionContext(parents, returnStates);
+            }
+        }
+
+        DFA[] decisions = new DFA[in.readInt()];
+        if (decisions.length != Python3Parser._decisionToDFA.length) {
+            throw new IllegalStateException("the number of decisions does not match the grammar");
+        }
+        for (int decision = 0; decision < decisions.length; decision++) {
+            DFA dfa = new DFA(atn.getDecisionState(decision), decision);
+            DFAState[] states = new DFAState[in.readInt()];
+            for (int i = 0; i < states.length; i++) {
+                int stateNumber = in.readInt();
+                boolean isAcceptState = in.readBoolean();
+                int prediction = in.readInt();
+                boolean requiresFullContext = in.readBoolean();
+                boolean hasSemanticContext = in.readBoolean();
+                boolean dipsIntoOuterContext = in.readBoolean();
+                int uniqueAlt = in.readInt();
+                RestoredConfigSet configs = new RestoredConfigSet();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    ATNConfig config = new ATNConfig(atn.states.get(in.readInt()), in.readInt(),
+                            contexts[in.readInt()], readSemanticContext(in));
+                    config.reachesIntoOuterContext = in.readInt();
+                    configs.add(config);
+                }
+                configs.hasSemanticContext = hasSemanticContext;
+                configs.dipsIntoOuterContext = dipsIntoOuterContext;
+                configs.uniqueAlt = uniqueAlt;
+                if (requiresFullContext) {
+                    // the conflict is the only reason to fall back to the full context
+                    configs.setConflictingAlts(PredictionMode.getAlts(
+                            PredictionMode.getConflictingAltSubsets(configs)));
+                }
+                configs.setReadonly(true);
+
+                DFAState state = new DFAState(configs);
+                state.stateNumber = stateNumber;
+                state.isAcceptState = isAcceptState;
+                state.prediction = prediction;
+                state.requiresFullContext = requiresFullContext;
+                int predicates = in.readInt();
+                if (predicates >= 0) {
+                    state.predicates = new DFAState.PredPrediction[predicates];
+                    for (int j = 0; j < predicates; j++) {
+                        state.predicates[j] = new DFAState.PredPrediction(readSemanticContext(in), in.readInt());
+                    }
+                }
+                states[i] = state;
+            }
+            for (DFAState state : states) {
+                state.edges = readEdges(in, states);
+                dfa.states.put(state, state);
+            }
+            if (dfa.isPrecedenceDfa()) {
+                DFAState[] starts = readEdges(in, states);
+                for (int precedence = 0; starts != null && precedence < starts.length; precedence++) {
+                    if (starts[precedence] != null) {
+                        dfa.setPrecedenceStartState(precedence, starts[precedence]);
+                    }
+                }
+            } else {
+                int start = in.readInt();
+                dfa.s0 = start == NO_STATE ? null : states[start];
+            }
+            decisions[decision] = dfa;
+        }
+        return decisions;
+    }
+
+    private static void collectContexts(PredictionContext root, Map<PredictionContext, Integer> ids,
+                                        List<PredictionContext> order) {
+        // post-order without recursion, the contexts can be as deep as the rule invocations
+        Deque<PredictionContext> pending = new ArrayDeque<>();
+        if (!ids.containsKey(root)) {
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            PredictionContext context = pending.peek();
+            boolean ready = true;
+            for (int i = 0; i < context.size(); i++) {
+                PredictionContext parent = context.getParent(i);
+                if (parent != null && !ids.containsKey(parent)) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                if (!ids.containsKey(context)) {
+                    ids.put(context, order.size());
+                    order.add(context);
+                }
+            }
+        }
+    }
+
+    private static int contextId(PredictionContext context, Map<PredictionContext, Integer> ids) {
+        return context == null ? NO_CONTEXT : ids.get(context);
+    }
+
+    private static PredictionContext context(PredictionContext[] contexts, int id) {
+        return id == NO_CONTEXT ? null : contexts[id];
+    }
+
+    private static void writeSemanticContext(DataOutputStream out, SemanticContext context) throws IOException {
+        if (context == SemanticContext.NONE) {
+            out.writeByte(SEMANTIC_NONE);
+        } else if (context instanceof SemanticContext.Predicate) {
+            SemanticContext.Predicate predicate = (SemanticContext.Predicate) context;
+            out.writeByte(SEMANTIC_PREDICATE);
+            out.writeInt(predicate.ruleIndex);
+            out.writeInt(predicate.predIndex);
+            out.writeBoolean(predicate.isCtxDependent);
+        } else if (context instanceof SemanticContext.PrecedencePredicate) {
+            out.writeByte(SEMANTIC_PRECEDENCE);
+            out.writeInt(((SemanticContext.PrecedencePredicate) context).precedence);
+        } else {
+            SemanticContext[] operands = context instanceof SemanticContext.AND
+                    ? ((SemanticContext.AND) context).opnds : ((SemanticContext.OR) context).opnds;
+            out.writeByte(context instanceof SemanticContext.AND ? SEMANTIC_AND : SEMANTIC_OR);
+            out.writeInt(operands.length);
+            for (SemanticContext operand : operands) {
+                writeSemanticContext(out, operand);
+            }
+        }
+    }
+
+    private static SemanticContext readSemanticContext(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+            case SEMANTIC_NONE:
+                return SemanticContext.NONE;
+            case SEMANTIC_PREDICATE:
+                return new SemanticContext.Predicate(in.readInt(), in.readInt(), in.readBoolean());
+            case SEMANTIC_PRECEDENCE:
+                return new SemanticContext.PrecedencePredicate(in.readInt());
+            case SEMANTIC_AND:
+            case SEMANTIC_OR:
+                int size = in.readInt();
+                SemanticContext context = readSemanticContext(in);
+                for (int i = 1; i < size; i++) {
+                    SemanticContext operand = readSemanticContext(in);
+                    context = type == SEMANTIC_AND ? new SemanticContext.AND(context, operand)
+                            : new SemanticContext.OR(context, operand);
+                }
+                return context;
+            default:
+                throw new IllegalStateException("unknown semantic context " + type);
+        }
+    }
+
+    private static void writeEdges(DataOutputStream out, DFAState[] edges, Map<DFAState, Integer> ids)
+            throws IOException {
+        if (edges == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(edges.length);
+        for (DFAState target : edges) {
+            if (target == null) {
+                out.writeInt(NO_STATE);
+            } else if (target == ATNSimulator.ERROR) {
+                out.writeInt(ERROR_STATE);
+            } else {
+                out.writeInt(ids.getOrDefault(target, NO_STATE));
+            }
+        }
+    }
+
+    private static DFAState[] readEdges(DataInputStream in, DFAState[] states) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        DFAState[] edges = new DFAState[size];
+        for (int i = 0; i < size; i++) {
+            int target = in.readInt();
+            if (target == ERROR_STATE) {
+                edges[i] = ATNSimulator.ERROR;
+            } else if (target != NO_STATE) {
+                edges[i] = states[target];
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Configuration set of a restored DFA state, which gets the conflicting alternatives
+     * the simulator sets on the states requiring the full context.
+     */
+    private static final class RestoredConfigSet extends ATNConfigSet {
+
+        RestoredConfigSet() {
+            super(false);
+        }
+
+        void setConflictingAlts(BitSet conflictingAlts) {
+            this.conflictingAlts = conflictingAlts;
+        }
+    }
+}
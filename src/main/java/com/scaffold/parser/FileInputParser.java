@@ -0,0 +1,74 @@
+package com.scaffold.parser;
+
+import com.scaffold.console.Definitions.ParseMode;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parser of a whole module (the `file_input` rule).
+ * In the two-stage mode the module is parsed with the faster SLL prediction first
+ * and is parsed again with the full LL prediction only if SLL fails, which happens
+ * either for a syntax error or for the rare input SLL cannot decide on.
+ */
+public class FileInputParser {
+
+    public static final AtomicLong sllParses = new AtomicLong();
+    public static final AtomicLong llFallbacks = new AtomicLong();
+
+    private final Python3Parser parser;
+    private final ParseMode mode;
+
+    public FileInputParser(Python3Parser parser, ParseMode mode) {
+        this.parser = parser;
+        this.mode = mode;
+    }
+
+    /**
+     * Parse the module using the configured prediction mode.
+     */
+    public Python3Parser.File_inputContext parse() {
+        if (this.mode == ParseMode.LL) {
+            return this.parser.file_input();
+        }
+
+        List<? extends ANTLRErrorListener> listeners = new ArrayList<>(this.parser.getErrorListeners());
+        ANTLRErrorStrategy errorHandler = this.parser.getErrorHandler();
+
+        this.parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        this.parser.removeErrorListeners();
+        this.parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            Python3Parser.File_inputContext tree = this.parser.file_input();
+            sllParses.incrementAndGet();
+            return tree;
+        } catch (ParseCancellationException e) {
+            llFallbacks.incrementAndGet();
+        } finally {
+            this.parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            this.parser.setErrorHandler(errorHandler);
+            for (ANTLRErrorListener listener : listeners) {
+                this.parser.addErrorListener(listener);
+            }
+        }
+
+        this.parser.reset();
+        return this.parser.file_input();
+    }
+
+    /**
+     * Get summary of how the modules have been parsed so far.
+     */
+    public static String statistics() {
+        return MessageFormat.format(
+                "Parsed {0} modules with SLL prediction, {1} modules fell back to LL prediction",
+                sllParses.get(), llFallbacks.get());
+    }
+}
@@ -0,0 +1,176 @@
+package com.scaffold.parser;
+
+import com.scaffold.writer.PyFunction;
+import com.scaffold.writer.PyFunctionDetails;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reader of the details of the function definitions of a module, which lexes the source again
+ * from the start of a definition only when the details of the function are asked for.
+ * The source of the module is kept as it has been opened for the parser, so nothing is read
+ * from the disk again and the modules the details are never asked for pay only for the offsets.
+ */
+class FunctionDefinitionReader implements PyFunction.Source {
+
+    private static final PyFunctionDetails UNKNOWN = new PyFunctionDetails(null, Collections.emptyList(),
+            Collections.emptyList(), false);
+
+    private final CharStream input;
+
+    FunctionDefinitionReader(CharStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public PyFunctionDetails read(int offset) {
+        if (offset < 0) {
+            return UNKNOWN;
+        }
+        // the stream is positioned by the lexer, the functions may be written by several threads
+        synchronized (this.input) {
+            this.input.seek(offset);
+            Python3Lexer lexer = new Python3Lexer(this.input);
+            lexer.removeErrorListeners();
+            return this.read(lexer);
+        }
+    }
+
+    /**
+     * Read the definition starting with the next token: `@decorator NEWLINE`* `async`? `def NAME (...) ...:`
+     * followed by the docstring, if the body starts with one.
+     */
+    private PyFunctionDetails read(Python3Lexer lexer) {
+        List<String> decorators = new ArrayList<>();
+        Token token = lexer.nextToken();
+        while (token.getType() == Python3Lexer.AT) {
+            Token first = lexer.nextToken();
+            Token last = first;
+            for (token = first; token.getType() != Python3Lexer.NEWLINE && token.getType() != Token.EOF;
+                 token = lexer.nextToken()) {
+                last = token;
+            }
+            decorators.add(this.text(first, last));
+            // the lexer starts at the indentation of the definition, which is an indent for it
+            token = lexer.nextToken();
+            while (token.getType() == Python3Parser.INDENT) {
+                token = lexer.nextToken();
+            }
+        }
+        boolean async = token.getType() == Python3Lexer.ASYNC;
+        if (async) {
+            token = lexer.nextToken();
+        }
+        if (token.getType() != Python3Lexer.DEF) {
+            return new PyFunctionDetails(null, Collections.emptyList(), decorators, async);
+        }
+
+        // `def NAME (`
+        lexer.nextToken();
+        lexer.nextToken();
+        List<String> parameters = new ArrayList<>();
+        Token first = null;
+        Token last = null;
+        int nesting = 0;
+        for (token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            int type = token.getType();
+            if (nesting == 0 && (type == Python3Lexer.COMMA || type == Python3Lexer.CLOSE_PAREN)) {
+                if (first != null) {
+                    parameters.add(this.text(first, last));
+                }
+                first = null;
+                if (type == Python3Lexer.CLOSE_PAREN) {
+                    break;
+                }
+                continue;
+            }
+            nesting += nestingChange(type);
+            if (first == null) {
+                first = token;
+            }
+            last = token;
+        }
+
+        // the return annotation may have colons inside brackets
+        for (token = lexer.nextToken(); token.getType() != Token.EOF
+                && (nesting > 0 || token.getType() != Python3Lexer.COLON); token = lexer.nextToken()) {
+            nesting += nestingChange(token.getType());
+        }
+        token = lexer.nextToken();
+        if (token.getType() == Python3Lexer.NEWLINE) {
+            token = lexer.nextToken();
+            if (token.getType() == Python3Parser.INDENT) {
+                token = lexer.nextToken();
+            }
+        }
+        List<Token> strings = new ArrayList<>();
+        for (; token.getType() == Python3Lexer.STRING; token = lexer.nextToken()) {
+            strings.add(token);
+        }
+        String docstring = null;
+        if (!strings.isEmpty() && (token.getType() == Python3Lexer.NEWLINE
+                || token.getType() == Python3Lexer.SEMI_COLON || token.getType() == Token.EOF)) {
+            docstring = docstring(strings);
+        }
+        return new PyFunctionDetails(docstring, parameters, decorators, async);
+    }
+
+    private String text(Token first, Token last) {
+        return this.input.getText(Interval.of(first.getStartIndex(), last.getStopIndex()));
+    }
+
+    private static int nestingChange(int type) {
+        if (type == Python3Lexer.OPEN_PAREN || type == Python3Lexer.OPEN_BRACK || type == Python3Lexer.OPEN_BRACE) {
+            return 1;
+        } else if (type == Python3Lexer.CLOSE_PAREN || type == Python3Lexer.CLOSE_BRACK
+                || type == Python3Lexer.CLOSE_BRACE) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the text of the string literals to be written between triple double quotes,
+     * or null if they are not a docstring (bytes and f-strings are not).
+     */
+    static String docstring(List<Token> strings) {
+        StringBuilder builder = new StringBuilder();
+        for (Token string : strings) {
+            String text = string.getText();
+            int quote = 0;
+            while (text.charAt(quote) != '"' && text.charAt(quote) != '\'') {
+                quote++;
+            }
+            String prefix = text.substring(0, quote).toLowerCase();
+            if (prefix.contains("b") || prefix.contains("f")) {
+                return null;
+            }
+            int quotes = text.startsWith(text.substring(quote, quote + 1).repeat(3), quote)
+                    && text.length() - quote >= 6 ? 3 : 1;
+            String body = text.substring(quote + quotes, text.length() - quotes);
+            // the escapes of a raw string are written as they read
+            builder.append(prefix.contains("r") ? body.replace("\\", "\\\\") : body);
+        }
+        String docstring = builder.toString().replace("\"\"\"", "\\\"\\\"\\\"");
+        if (docstring.endsWith("\"") && !isEscaped(docstring, docstring.length() - 1)) {
+            docstring = docstring.substring(0, docstring.length() - 1) + "\\\"";
+        }
+        return docstring;
+    }
+
+    /**
+     * Get whether the character at the index is preceded by an odd number of backslashes.
+     */
+    private static boolean isEscaped(String text, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && text.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+}
@@ -0,0 +1,72 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splitter of the tokens of a module into chunks that can be parsed independently.
+ * A chunk starts only at a top-level `def`, `class` or `async` statement (including the decorators
+ * in front of it), so every chunk is a sequence of complete top-level statements.
+ */
+public final class ModuleChunker {
+
+    private ModuleChunker() {
+    }
+
+    /**
+     * Split the tokens into chunks spanning at least the given number of characters each
+     * (except for the last one). The end-of-file token is not included in any chunk.
+     */
+    public static List<List<Token>> split(List<Token> tokens, int chunkChars) {
+        List<List<Token>> chunks = new ArrayList<>();
+        int end = tokens.size();
+        if (end > 0 && tokens.get(end - 1).getType() == Token.EOF) {
+            end--;
+        }
+
+        int chunkStart = 0;
+        int depth = 0;
+        boolean atLineStart = true;
+        int decoratorsStart = -1;
+        for (int i = 0; i < end; i++) {
+            Token token = tokens.get(i);
+            int type = token.getType();
+            if (type == Python3Parser.INDENT) {
+                depth++;
+                continue;
+            } else if (type == Python3Parser.DEDENT) {
+                depth--;
+                continue;
+            } else if (type == Python3Parser.NEWLINE) {
+                atLineStart = true;
+                continue;
+            }
+
+            if (atLineStart && depth == 0) {
+                if (type == Python3Parser.AT) {
+                    if (decoratorsStart < 0) {
+                        decoratorsStart = i;
+                    }
+                } else if (type == Python3Parser.DEF || type == Python3Parser.CLASS
+                        || type == Python3Parser.ASYNC) {
+                    int statementStart = decoratorsStart < 0 ? i : decoratorsStart;
+                    if (statementStart > chunkStart && tokens.get(statementStart).getStartIndex()
+                            - tokens.get(chunkStart).getStartIndex() >= chunkChars) {
+                        chunks.add(tokens.subList(chunkStart, statementStart));
+                        chunkStart = statementStart;
+                    }
+                    decoratorsStart = -1;
+                } else {
+                    decoratorsStart = -1;
+                }
+            }
+            atLineStart = false;
+        }
+        if (chunkStart < end || chunks.isEmpty()) {
+            chunks.add(tokens.subList(chunkStart, end));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,188 @@
+package com.scaffold.parser;
+
+import com.scaffold.console.Definitions.SkipReason;
+import com.scaffold.writer.PyWriterConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Check of the raw bytes of a module, made before it is decoded and parsed, for the modules
+ * that cannot produce any tests: the modules larger than the size limit, the modules generated
+ * by a tool (a marker in a comment line of the header) and the modules without a `def` at a line start.
+ * A `def` inside a string is taken for a function too, so no module with functions is skipped.
+ */
+public final class ModulePrefilter {
+
+    // the generated file markers are looked for only in the first lines
+    static final int HEADER_LINES = 10;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] DEF = "def".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ASYNC = "async".getBytes(StandardCharsets.US_ASCII);
+
+    private static final AtomicLongArray skipped = new AtomicLongArray(SkipReason.values().length);
+
+    private ModulePrefilter() {
+    }
+
+    /**
+     * Get the reason to skip the module with the source from the position to the limit of the buffer,
+     * or null if the module has to be parsed.
+     */
+    public static SkipReason check(ByteBuffer source, PyWriterConfig config) {
+        if (!config.prefilter) {
+            return null;
+        }
+        SkipReason reason = null;
+        if (config.maxModuleBytes > 0 && source.remaining() > config.maxModuleBytes) {
+            reason = SkipReason.TOO_LARGE;
+        } else if (hasGeneratedMarker(source, config)) {
+            reason = SkipReason.GENERATED;
+        } else if (!hasTestableDef(source)) {
+            reason = SkipReason.NO_FUNCTIONS;
+        }
+        if (reason != null) {
+            skipped.incrementAndGet(reason.ordinal());
+        }
+        return reason;
+    }
+
+    /**
+     * Get whether one of the first lines is a comment with a marker, the markers in docstrings
+     * and in the code do not count.
+     */
+    static boolean hasGeneratedMarker(ByteBuffer source, PyWriterConfig config) {
+        if (config.generatedMarkers.isEmpty()) {
+            return false;
+        }
+        int index = source.position();
+        int limit = source.limit();
+        if (startsWith(source, index, limit, UTF8_BOM)) {
+            index += UTF8_BOM.length;
+        }
+        for (int line = 0; line < HEADER_LINES && index < limit; line++) {
+            int start = skipWhitespace(source, index, limit);
+            int end = start;
+            while (end < limit && source.get(end) != '\n') {
+                end++;
+            }
+            if (start < end && source.get(start) == '#') {
+                for (String marker : config.generatedMarkers) {
+                    if (!marker.isEmpty() && indexOf(source, start, end,
+                            marker.getBytes(StandardCharsets.UTF_8)) >= 0) {
+                        return true;
+                    }
+                }
+            }
+            index = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Get whether there is a line starting with `def` or `async def` followed by a name that is not a dunder.
+     */
+    static boolean hasTestableDef(ByteBuffer source) {
+        int index = source.position();
+        int limit = source.limit();
+        if (startsWith(source, index, limit, UTF8_BOM)) {
+            index += UTF8_BOM.length;
+        }
+        while (index < limit) {
+            index = skipWhitespace(source, index, limit);
+            if (isKeyword(source, index, limit, ASYNC)) {
+                index = skipWhitespace(source, index + ASYNC.length, limit);
+            }
+            if (isKeyword(source, index, limit, DEF)
+                    && !isDunder(source, skipWhitespace(source, index + DEF.length, limit), limit)) {
+                return true;
+            }
+            while (index < limit && source.get(index) != '\n' && source.get(index) != '\r') {
+                index++;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(ByteBuffer source, int index, int limit) {
+        while (index < limit) {
+            byte b = source.get(index);
+            if (b != ' ' && b != '\t' && b != '\f') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Get whether the keyword is at the index followed by whitespace or a line continuation.
+     */
+    private static boolean isKeyword(ByteBuffer source, int index, int limit, byte[] keyword) {
+        if (!startsWith(source, index, limit, keyword) || index + keyword.length >= limit) {
+            return false;
+        }
+        byte next = source.get(index + keyword.length);
+        return next == ' ' || next == '\t' || next == '\f' || next == '\\';
+    }
+
+    private static boolean isDunder(ByteBuffer source, int index, int limit) {
+        int end = index;
+        while (end < limit && isNameByte(source.get(end))) {
+            end++;
+        }
+        return end - index >= 2 && source.get(index) == '_' && source.get(index + 1) == '_'
+                && source.get(end - 1) == '_' && source.get(end - 2) == '_';
+    }
+
+    private static boolean isNameByte(byte b) {
+        // the bytes of the non-ASCII characters are negative
+        return b < 0 || b == '_' || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+    }
+
+    private static boolean startsWith(ByteBuffer source, int index, int limit, byte[] prefix) {
+        if (index + prefix.length > limit) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (source.get(index + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer source, int from, int to, byte[] pattern) {
+        for (int i = from; i + pattern.length <= to; i++) {
+            if (startsWith(source, i, to, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get summary of how many modules have been skipped before parsing and why.
+     */
+    public static String statistics() {
+        return MessageFormat.format("Skipped {0} modules before parsing: {1} without functions, "
+                        + "{2} generated, {3} too large", skippedModules(),
+                skipped.get(SkipReason.NO_FUNCTIONS.ordinal()), skipped.get(SkipReason.GENERATED.ordinal()),
+                skipped.get(SkipReason.TOO_LARGE.ordinal()));
+    }
+
+    /**
+     * Get the number of modules skipped before parsing for any reason.
+     */
+    public static long skippedModules() {
+        long total = 0;
+        for (int i = 0; i < skipped.length(); i++) {
+            total += skipped.get(i);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,177 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Extractor of the function definitions that runs only the lexer.
+ * It follows the INDENT/DEDENT tokens to keep track of the nesting of the `def` and `class`
+ * blocks instead of building the parse tree, and reports every function together with
+ * the name of the closest enclosing class.
+ * The lexer does not validate the syntax, so whenever the token sequence is not what a valid
+ * module would produce, the extraction gives up and the module has to be parsed.
+ * Only the headers of the definitions and the blocks they open are checked though,
+ * the syntax errors elsewhere in the module are not detected.
+ */
+public class OutlineExtractor {
+
+    /**
+     * Receiver of the functions found, with the offset of the first character of their definition
+     * (the first decorator or `async` if there are any) in the source.
+     */
+    public interface FunctionSink {
+        void add(String parent, String name, int offset);
+    }
+
+    private final Python3Lexer lexer;
+
+    public OutlineExtractor(Python3Lexer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * Extract the functions passing them to the sink in the order of their definition.
+     * Returns false (having passed nothing to the sink) if the module cannot be handled.
+     */
+    public boolean extract(FunctionSink sink) {
+        List<String[]> functions = new ArrayList<>();
+        int[] offsets = new int[16];
+
+        // for every open `def` or `class` block: its indentation depth and the class
+        // the functions defined inside of the block belong to
+        int[] scopeDepths = new int[16];
+        String[] scopeParents = new String[16];
+        int scopes = 0;
+
+        int depth = 0;
+        boolean atLineStart = true;
+        boolean expectBlock = false;
+        String headerParent = null;
+        int lastType = Token.INVALID_TYPE;
+        // the start of the decorators of the next definition
+        int decoratorsStart = -1;
+
+        for (Token token = this.lexer.nextToken(); token.getType() != Token.EOF;
+             token = this.lexer.nextToken()) {
+            int type = token.getType();
+
+            if (expectBlock) {
+                // a header ending with a colon must be followed by an indented block
+                if (type != Python3Parser.INDENT) {
+                    return false;
+                }
+                if (scopes == scopeDepths.length) {
+                    scopeDepths = Arrays.copyOf(scopeDepths, scopes * 2);
+                    scopeParents = Arrays.copyOf(scopeParents, scopes * 2);
+                }
+                scopeDepths[scopes] = depth + 1;
+                scopeParents[scopes] = headerParent;
+                scopes++;
+                expectBlock = false;
+                headerParent = null;
+            }
+
+            if (type == Python3Parser.INDENT) {
+                depth++;
+                atLineStart = true;
+            } else if (type == Python3Parser.DEDENT) {
+                depth--;
+                if (depth < 0) {
+                    return false;
+                }
+                while (scopes > 0 && scopeDepths[scopes - 1] > depth) {
+                    scopes--;
+                }
+                atLineStart = true;
+            } else if (type == Python3Lexer.NEWLINE) {
+                if (headerParent != null && lastType == Python3Lexer.COLON) {
+                    expectBlock = true;
+                } else {
+                    headerParent = null;
+                }
+                atLineStart = true;
+            } else if (atLineStart) {
+                atLineStart = false;
+                String parent = scopes == 0 ? "." : scopeParents[scopes - 1];
+                int start = decoratorsStart < 0 ? token.getStartIndex() : decoratorsStart;
+                decoratorsStart = type == Python3Lexer.AT ? start : -1;
+                if (type == Python3Lexer.ASYNC) {
+                    token = this.lexer.nextToken();
+                    type = token.getType();
+                    if (type == Python3Lexer.FOR || type == Python3Lexer.WITH) {
+                        lastType = type;
+                        continue;
+                    } else if (type != Python3Lexer.DEF) {
+                        return false;
+                    }
+                }
+                if (type == Python3Lexer.DEF || type == Python3Lexer.CLASS) {
+                    Token name = this.lexer.nextToken();
+                    if (name.getType() != Python3Lexer.NAME) {
+                        return false;
+                    }
+                    if (!this.header(type == Python3Lexer.DEF)) {
+                        return false;
+                    }
+                    if (type == Python3Lexer.DEF) {
+                        if (functions.size() == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                        }
+                        offsets[functions.size()] = start;
+                        functions.add(new String[]{parent, name.getText()});
+                        headerParent = parent;
+                    } else {
+                        headerParent = name.getText();
+                    }
+                    type = Python3Lexer.COLON;
+                }
+            }
+            lastType = type;
+        }
+
+        if (expectBlock) {
+            return false;
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            sink.add(functions.get(i)[0], functions.get(i)[1], offsets[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Read the rest of a `def` or `class` header after its name up to the colon ending it,
+     * checking that the brackets are balanced and that a function has its parameters.
+     */
+    private boolean header(boolean function) {
+        Token token = this.lexer.nextToken();
+        if (function && token.getType() != Python3Lexer.OPEN_PAREN) {
+            return false;
+        }
+        // the closing brackets expected, the lexer does not end the line while any is open
+        int[] closing = new int[8];
+        int open = 0;
+        for (; ; token = this.lexer.nextToken()) {
+            int type = token.getType();
+            if (type == Python3Lexer.OPEN_PAREN || type == Python3Lexer.OPEN_BRACK
+                    || type == Python3Lexer.OPEN_BRACE) {
+                if (open == closing.length) {
+                    closing = Arrays.copyOf(closing, open * 2);
+                }
+                closing[open++] = type == Python3Lexer.OPEN_PAREN ? Python3Lexer.CLOSE_PAREN
+                        : type == Python3Lexer.OPEN_BRACK ? Python3Lexer.CLOSE_BRACK : Python3Lexer.CLOSE_BRACE;
+            } else if (type == Python3Lexer.CLOSE_PAREN || type == Python3Lexer.CLOSE_BRACK
+                    || type == Python3Lexer.CLOSE_BRACE) {
+                if (open == 0 || closing[--open] != type) {
+                    return false;
+                }
+            } else if (open == 0 && type == Python3Lexer.COLON) {
+                return true;
+            } else if (type == Token.EOF || type == Python3Lexer.NEWLINE) {
+                return false;
+            }
+        }
+    }
+}
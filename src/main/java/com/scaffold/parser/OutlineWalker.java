@@ -0,0 +1,114 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.Arrays;
+
+/**
+ * Walker of the parse tree that visits only the statements which can contain definitions.
+ * Instead of looking up the enclosing class of every function through its ancestors,
+ * it keeps the name of the closest enclosing class along with every node waiting to be visited.
+ * Simple statements, expressions and parameters are never entered.
+ */
+public final class OutlineWalker {
+
+    private OutlineWalker() {
+    }
+
+    /**
+     * Pass the functions of the tree to the sink in the order of their definition.
+     */
+    public static void walk(ParseTree tree, OutlineExtractor.FunctionSink sink) {
+        // the nodes to visit with the name of their closest enclosing class
+        ParseTree[] nodes = new ParseTree[64];
+        String[] parents = new String[64];
+        int size = 0;
+        nodes[size] = tree;
+        parents[size] = ".";
+        size++;
+
+        while (size > 0) {
+            size--;
+            ParseTree node = nodes[size];
+            String parent = parents[size];
+            nodes[size] = null;
+
+            // the names and the bodies are missing if the parser recovered from an error
+            ParseTree body;
+            if (node instanceof Python3Parser.FuncdefContext) {
+                Python3Parser.FuncdefContext funcdef = (Python3Parser.FuncdefContext) node;
+                if (isPresent(funcdef.NAME())) {
+                    sink.add(parent, funcdef.NAME().getText(), definitionStart(funcdef));
+                }
+                body = funcdef.suite();
+            } else if (node instanceof Python3Parser.ClassdefContext) {
+                Python3Parser.ClassdefContext classdef = (Python3Parser.ClassdefContext) node;
+                if (isPresent(classdef.NAME())) {
+                    parent = classdef.NAME().getText();
+                }
+                body = classdef.suite();
+            } else {
+                body = node;
+            }
+            if (body == null) {
+                continue;
+            }
+
+            // children are pushed in reverse to be visited in the source order
+            for (int i = body.getChildCount() - 1; i >= 0; i--) {
+                ParseTree child = body.getChild(i);
+                if (!canContainDefinitions(child)) {
+                    continue;
+                }
+                if (size == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, size * 2);
+                    parents = Arrays.copyOf(parents, size * 2);
+                }
+                nodes[size] = child;
+                parents[size] = parent;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Get the offset in the source of a function definition including `async` and the decorators in front of it.
+     */
+    static int definitionStart(Python3Parser.FuncdefContext funcdef) {
+        ParserRuleContext definition = funcdef;
+        if (definition.getParent() instanceof Python3Parser.Async_funcdefContext
+                || definition.getParent() instanceof Python3Parser.Async_stmtContext) {
+            definition = definition.getParent();
+        }
+        if (definition.getParent() instanceof Python3Parser.DecoratedContext) {
+            definition = definition.getParent();
+        }
+        return definition.getStart().getStartIndex();
+    }
+
+    private static boolean isPresent(TerminalNode name) {
+        return name != null && !(name instanceof ErrorNode);
+    }
+
+    /**
+     * Get whether a node is a statement (or a part of one) that can have a definition inside.
+     */
+    private static boolean canContainDefinitions(ParseTree node) {
+        return node instanceof Python3Parser.StmtContext
+                || node instanceof Python3Parser.Compound_stmtContext
+                || node instanceof Python3Parser.SuiteContext
+                || node instanceof Python3Parser.FuncdefContext
+                || node instanceof Python3Parser.ClassdefContext
+                || node instanceof Python3Parser.DecoratedContext
+                || node instanceof Python3Parser.Async_funcdefContext
+                || node instanceof Python3Parser.Async_stmtContext
+                || node instanceof Python3Parser.If_stmtContext
+                || node instanceof Python3Parser.While_stmtContext
+                || node instanceof Python3Parser.For_stmtContext
+                || node instanceof Python3Parser.Try_stmtContext
+                || node instanceof Python3Parser.With_stmtContext;
+    }
+}
@@ -0,0 +1,67 @@
+package com.scaffold.parser;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Syntax error found while parsing a module in the recovering mode.
+ * Only the position and the message are kept (no exception, no stack trace),
+ * and the diagnostics of all modules are reported together at the end of the run.
+ */
+public final class ParseDiagnostic {
+
+    // the number of diagnostics listed in the report, the rest are only counted
+    static final int REPORT_LIMIT = 100;
+
+    private static final Queue<ParseDiagnostic> recorded = new ConcurrentLinkedQueue<>();
+
+    public final String sourceName;
+    public final int line;
+    public final int column;
+    public final String message;
+
+    public ParseDiagnostic(String sourceName, int line, int column, String message) {
+        this.sourceName = sourceName;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    /**
+     * Keep the diagnostics of a module for the report.
+     */
+    public static void record(Collection<ParseDiagnostic> diagnostics) {
+        recorded.addAll(diagnostics);
+    }
+
+    /**
+     * Get the report of the diagnostics recorded since the last report, or null if there are none.
+     */
+    public static String report() {
+        if (recorded.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        long sources = recorded.stream().map(d -> d.sourceName).distinct().count();
+        int count = 0;
+        for (ParseDiagnostic diagnostic = recorded.poll(); diagnostic != null; diagnostic = recorded.poll()) {
+            if (count < REPORT_LIMIT) {
+                builder.append(System.lineSeparator()).append("  ").append(diagnostic);
+            }
+            count++;
+        }
+        if (count > REPORT_LIMIT) {
+            builder.append(System.lineSeparator()).append(MessageFormat.format("  ... and {0} more",
+                    count - REPORT_LIMIT));
+        }
+        return MessageFormat.format("Recovered from {0} syntax errors in {1} modules:", count, sources)
+                + builder;
+    }
+
+    @Override
+    public String toString() {
+        return this.sourceName + ":" + this.line + ":" + this.column + ": " + this.message;
+    }
+}
@@ -0,0 +1,13 @@
+package com.scaffold.parser;
+
+/**
+ * Exception thrown from the prediction of the parser when the time budget of the module has run out.
+ */
+public class ParseTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ParseTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,112 @@
+package com.scaffold.parser;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent extracting the functions of a module.
+ * Only the slowest modules are kept, and they are reported together at the end of the run,
+ * along with how much slower the modules parsed first were, while the DFA was warming up.
+ */
+public final class ParseTimings {
+
+    // the number of the slowest modules kept for the report
+    static final int REPORT_LIMIT = 10;
+    // the number of the modules parsed first which are compared to the modules parsed after them
+    static final int WARM_UP_MODULES = 100;
+
+    private static final PriorityQueue<ParseTimings> slowest = new PriorityQueue<>(
+            Comparator.comparingLong((ParseTimings timing) -> timing.nanos));
+    private static long modules = 0;
+    private static long firstNanos = 0;
+    private static long warmUpNanos = 0;
+    private static long steadyNanos = 0;
+
+    public final String sourceName;
+    public final long nanos;
+
+    public ParseTimings(String sourceName, long nanos) {
+        this.sourceName = sourceName;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Keep the time of a module for the report if it is one of the slowest so far.
+     */
+    public static void record(String sourceName, long nanos) {
+        synchronized (slowest) {
+            modules++;
+            if (modules == 1) {
+                firstNanos = nanos;
+            }
+            if (modules <= WARM_UP_MODULES) {
+                warmUpNanos += nanos;
+            } else {
+                steadyNanos += nanos;
+            }
+            if (slowest.size() == REPORT_LIMIT && slowest.peek().nanos >= nanos) {
+                return;
+            }
+            slowest.add(new ParseTimings(sourceName, nanos));
+            if (slowest.size() > REPORT_LIMIT) {
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * Get the report of the slowest modules recorded since the last report, or null if there are none.
+     */
+    public static String report() {
+        List<ParseTimings> timings = new ArrayList<>();
+        synchronized (slowest) {
+            for (ParseTimings timing = slowest.poll(); timing != null; timing = slowest.poll()) {
+                timings.add(0, timing);
+            }
+        }
+        if (timings.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(MessageFormat.format(
+                "The {0} slowest modules to parse:", timings.size()));
+        for (ParseTimings timing : timings) {
+            builder.append(System.lineSeparator()).append("  ").append(timing);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the time the first module took to parse and the time the warm-up took over the steady state:
+     * the time of the first modules less the time they would have taken at the average pace of the others.
+     * Returns null if no module has been parsed.
+     */
+    public static String warmUpStatistics() {
+        synchronized (slowest) {
+            if (modules == 0) {
+                return null;
+            }
+            long warmUpModules = Math.min(modules, WARM_UP_MODULES);
+            String statistics = MessageFormat.format("The first module took {0} ms to parse, the first {1} "
+                            + "modules {2} ms on average", TimeUnit.NANOSECONDS.toMillis(firstNanos), warmUpModules,
+                    String.format("%.2f", warmUpNanos / 1e6 / warmUpModules));
+            if (modules <= WARM_UP_MODULES) {
+                return statistics;
+            }
+            long steadyModules = modules - WARM_UP_MODULES;
+            long overheadNanos = Math.max(0, warmUpNanos - steadyNanos * WARM_UP_MODULES / steadyModules);
+            return statistics + MessageFormat.format(" and the other {0} modules {1} ms on average, "
+                            + "the warm-up took {2} ms over the steady state", steadyModules,
+                    String.format("%.2f", steadyNanos / 1e6 / steadyModules),
+                    TimeUnit.NANOSECONDS.toMillis(overheadNanos));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.sourceName + ": " + TimeUnit.NANOSECONDS.toMillis(this.nanos) + " ms";
+    }
+}
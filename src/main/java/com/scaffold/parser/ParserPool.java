@@ -0,0 +1,72 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+
+/**
+ * One lexer and one parser per thread which are reset for every module instead of being
+ * created again, which saves their setup when many small modules are processed.
+ * The instances returned are valid only until the next call on the same thread.
+ */
+public final class ParserPool {
+
+    private static final ANTLRErrorListener ERROR_LISTENER = new DescriptiveBailErrorListener();
+    private static final ThreadLocal<ParserPool> pools = ThreadLocal.withInitial(ParserPool::new);
+
+    private final Python3Lexer lexer;
+    private final CommonTokenStream tokens;
+    private final Python3Parser parser;
+
+    private ParserPool() {
+        this.lexer = new Python3Lexer(CharStreams.fromString(""));
+        this.tokens = new CommonTokenStream(this.lexer);
+        this.parser = new Python3Parser(this.tokens);
+    }
+
+    /**
+     * Get the lexer of the current thread reset to read the input.
+     * Without a listener it throws an exception for the first syntax error.
+     */
+    public static Python3Lexer lexer(CharStream input, ANTLRErrorListener listener) {
+        Python3Lexer lexer = pools.get().lexer;
+        // setting the input resets the state of the lexer
+        lexer.setInputStream(input);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(listener == null ? ERROR_LISTENER : listener);
+        return lexer;
+    }
+
+    /**
+     * Get the parser of the current thread reset to parse the tokens.
+     * Without a listener it throws an exception for the first syntax error.
+     */
+    public static Python3Parser parser(TokenSource tokenSource, ANTLRErrorListener listener) {
+        ParserPool pool = pools.get();
+        pool.tokens.setTokenSource(tokenSource);
+        return parser(pool.tokens, listener);
+    }
+
+    /**
+     * Get the parser of the current thread reset to parse the token stream.
+     * Without a listener it throws an exception for the first syntax error.
+     */
+    public static Python3Parser parser(TokenStream tokens, ANTLRErrorListener listener) {
+        Python3Parser parser = pools.get().parser;
+        parser.setInputStream(tokens);
+        parser.removeParseListeners();
+        parser.setBuildParseTree(true);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener == null ? ERROR_LISTENER : listener);
+        // the cache of the prediction contexts is replaced whenever the DFA cache is trimmed
+        DfaCache.attach(parser);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return parser;
+    }
+}
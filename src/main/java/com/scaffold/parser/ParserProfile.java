@@ -0,0 +1,132 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Profile of the grammar decisions aggregated over all modules parsed with the profiling on.
+ * The prediction of every parser is timed and counted by ANTLR (see {@link ProfilingATNSimulator});
+ * the counts of each parser are added up here once it has parsed its module.
+ */
+public final class ParserProfile {
+
+    // the number of decisions listed in every ranking of the report
+    static final int REPORT_LIMIT = 25;
+
+    private static final int DECISIONS = Python3Parser._ATN.getNumberOfDecisions();
+
+    private static long parses = 0;
+    private static final long[] invocations = new long[DECISIONS];
+    private static final long[] timeInPrediction = new long[DECISIONS];
+    private static final long[] sllTotalLook = new long[DECISIONS];
+    private static final long[] sllMaxLook = new long[DECISIONS];
+    private static final long[] llFallbacks = new long[DECISIONS];
+    private static final long[] llTotalLook = new long[DECISIONS];
+    private static final long[] llMaxLook = new long[DECISIONS];
+    private static final long[] atnTransitions = new long[DECISIONS];
+    private static final long[] ambiguities = new long[DECISIONS];
+    private static final long[] contextSensitivities = new long[DECISIONS];
+    private static final long[] errors = new long[DECISIONS];
+
+    private ParserProfile() {
+    }
+
+    /**
+     * Turn the profiling on for the next parse of the parser, dropping the counts of the previous one.
+     */
+    public static void enable(Python3Parser parser) {
+        parser.setInterpreter(new ProfilingATNSimulator(parser));
+    }
+
+    /**
+     * Add the counts of the parser to the profile, if it has been profiled.
+     */
+    public static void record(Python3Parser parser) {
+        ParseInfo parseInfo = parser.getParseInfo();
+        if (parseInfo == null) {
+            return;
+        }
+        synchronized (ParserProfile.class) {
+            parses++;
+            for (DecisionInfo info : parseInfo.getDecisionInfo()) {
+                int d = info.decision;
+                invocations[d] += info.invocations;
+                timeInPrediction[d] += info.timeInPrediction;
+                sllTotalLook[d] += info.SLL_TotalLook;
+                sllMaxLook[d] = Math.max(sllMaxLook[d], info.SLL_MaxLook);
+                llFallbacks[d] += info.LL_Fallback;
+                llTotalLook[d] += info.LL_TotalLook;
+                llMaxLook[d] = Math.max(llMaxLook[d], info.LL_MaxLook);
+                atnTransitions[d] += info.SLL_ATNTransitions + info.LL_ATNTransitions;
+                ambiguities[d] += info.ambiguities.size();
+                contextSensitivities[d] += info.contextSensitivities.size();
+                errors[d] += info.errors.size();
+            }
+        }
+    }
+
+    /**
+     * Get the report ranking the decisions by the prediction time, the fallbacks to the full LL prediction,
+     * the lookahead depth and the ambiguities, or null if nothing has been profiled since the last report.
+     */
+    public static synchronized String report() {
+        if (parses == 0) {
+            return null;
+        }
+        long totalTime = sum(timeInPrediction);
+        StringBuilder builder = new StringBuilder(MessageFormat.format(
+                "Profile of {0} parses: {1} decisions predicted in {2} ms, {3} fell back to LL prediction, "
+                        + "{4} ambiguities", parses, sum(invocations),
+                TimeUnit.NANOSECONDS.toMillis(totalTime), sum(llFallbacks), sum(ambiguities)));
+        builder.append(System.lineSeparator());
+        appendRanking(builder, "prediction time", d -> timeInPrediction[d]);
+        appendRanking(builder, "fallbacks to LL prediction", d -> llFallbacks[d]);
+        appendRanking(builder, "maximum lookahead", d -> Math.max(sllMaxLook[d], llMaxLook[d]));
+        appendRanking(builder, "ambiguities", d -> ambiguities[d]);
+
+        parses = 0;
+        for (long[] counts : new long[][]{invocations, timeInPrediction, sllTotalLook, sllMaxLook, llFallbacks,
+                llTotalLook, llMaxLook, atnTransitions, ambiguities, contextSensitivities, errors}) {
+            Arrays.fill(counts, 0);
+        }
+        return builder.toString();
+    }
+
+    private static void appendRanking(StringBuilder builder, String title, ToLongFunction<Integer> key) {
+        builder.append(System.lineSeparator()).append("Decisions by ").append(title).append(':');
+        IntStream.range(0, DECISIONS).boxed()
+                .filter(d -> key.applyAsLong(d) > 0)
+                .sorted(Comparator.comparingLong(d -> -key.applyAsLong(d)))
+                .limit(REPORT_LIMIT)
+                .forEach(d -> builder.append(System.lineSeparator()).append(describe(d)));
+        builder.append(System.lineSeparator());
+    }
+
+    private static String describe(int d) {
+        return MessageFormat.format("  decision {0} ({1}): {2} invocations, {3} ms, SLL lookahead {4} avg {5} max, "
+                        + "{6} LL fallbacks, LL lookahead {7} avg {8} max, {9} ATN transitions, {10} ambiguities, "
+                        + "{11} context sensitivities, {12} errors",
+                d, Python3Parser.ruleNames[Python3Parser._ATN.getDecisionState(d).ruleIndex], invocations[d],
+                TimeUnit.NANOSECONDS.toMillis(timeInPrediction[d]),
+                String.format("%.2f", invocations[d] == 0 ? 0.0 : (double) sllTotalLook[d] / invocations[d]),
+                sllMaxLook[d], llFallbacks[d],
+                String.format("%.2f", llFallbacks[d] == 0 ? 0.0 : (double) llTotalLook[d] / llFallbacks[d]),
+                llMaxLook[d], atnTransitions[d], ambiguities[d], contextSensitivities[d], errors[d]);
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
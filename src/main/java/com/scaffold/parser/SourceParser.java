@@ -6,15 +6,35 @@ src/main/java/nl/bigo/pythonparser/Main.java
 
 package com.scaffold.parser;
 
+import com.scaffold.console.Definitions.ExtractionEngine;
+import com.scaffold.console.WorkerThreadFactory;
 import com.scaffold.writer.PyFunction;
 import com.scaffold.writer.PyModule;
+import com.scaffold.writer.PyWriterConfig;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
 import org.antlr.v4.runtime.ParserRuleContext;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
 import java.io.File;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Python source parser class that provides methods to extract information
@@ -23,74 +43,369 @@ import java.util.ArrayList;
 public class SourceParser {
 
     public final PyModule pyModule;
-    private final Python3Parser parser;
+    public final List<ParseDiagnostic> diagnostics = new ArrayList<>();
+    private final PyWriterConfig config;
+    private final CharStream input;
+    private final FunctionDefinitionReader definitions;
+    private CollectingErrorListener errorListener;
+    private long deadlineNanos;
+
+    public static final AtomicLong chunkedModules = new AtomicLong();
+    public static final AtomicLong parsedChunks = new AtomicLong();
+    public static final AtomicLong overflowedModules = new AtomicLong();
+    public static final AtomicLong timedOutModules = new AtomicLong();
+    public static final AtomicLong skippedModules = new AtomicLong();
+
+    // the threads parsing the chunks of the large modules, with the stack size of the parse threads
+    private static ExecutorService chunkPool;
+    private static long chunkPoolStackBytes;
 
     public SourceParser(String filePath) throws Exception {
+        this(filePath, new PyWriterConfig());
+    }
+
+    public SourceParser(String filePath, PyWriterConfig config) throws Exception {
+        this(filePath, openSourceCode(filePath), config);
+    }
+
+    public SourceParser(String filePath, String sourceCode, PyWriterConfig config) {
+        this(filePath, CharStreams.fromString(sourceCode), config);
+    }
+
+    public SourceParser(String filePath, CharStream input, PyWriterConfig config) {
         this.pyModule = new PyModule(filePath);
-        File moduleFile = new File(filePath);
-        String sourceCode = Files.readString(Paths.get(moduleFile.getAbsolutePath()));
-        this.parser = new Builder.Parser(sourceCode).build();
+        this.config = config;
+        this.input = input;
+        this.definitions = new FunctionDefinitionReader(input);
+    }
+
+    /**
+     * Open the source code of a module file without copying it more than necessary.
+     */
+    public static CharStream openSourceCode(String filePath) throws IOException {
+        return openSourceCode(filePath, readSourceCode(filePath));
+    }
+
+    /**
+     * Get the bytes of a module file, to be checked before the module is opened.
+     */
+    public static ByteBuffer readSourceCode(String filePath) throws IOException {
+        return SourceStreams.read(Paths.get(new File(filePath).getAbsolutePath()));
+    }
+
+    /**
+     * Open the bytes of a module file as the input of the lexer.
+     */
+    public static CharStream openSourceCode(String filePath, ByteBuffer bytes) throws IOException {
+        return SourceStreams.open(bytes, new File(filePath).getAbsolutePath());
     }
 
     /**
      * Load functions metadata into the Python module object.
      */
     public void loadFunctions() {
-        ParseTreeWalker.DEFAULT.walk(new Python3BaseListener() {
+        long start = System.nanoTime();
+        Lock parsing = DfaCache.parsing();
+        parsing.lock();
+        try {
+            this.loadFunctionsWithFallback(start);
+        } finally {
+            parsing.unlock();
+            ParseTimings.record(this.sourcePath(), System.nanoTime() - start);
+        }
+        // the lock is released first, a trim waits for the parses of the other threads only
+        DfaCache.enforce(this.config.dfaCacheMaxBytes);
+        if (this.errorListener != null) {
+            this.diagnostics.addAll(this.errorListener.diagnostics);
+        }
+        ParseDiagnostic.record(this.diagnostics);
+    }
+
+    /**
+     * Load functions with the configured engine, following the tokens only if the parser runs out
+     * of stack or out of time. The module is not parsed again, it would most likely fail again
+     * after as much work.
+     */
+    private void loadFunctionsWithFallback(long start) {
+        if (this.config.recoverFromErrors) {
+            this.errorListener = this.newErrorListener();
+        }
+        if (this.config.parseTimeoutMillis > 0) {
+            this.deadlineNanos = start + TimeUnit.MILLISECONDS.toNanos(this.config.parseTimeoutMillis);
+        }
+        if (this.config.extractionEngine == ExtractionEngine.LEXER_OUTLINE && this.loadFunctionsFromOutline()) {
+            return;
+        }
+        try {
+            this.loadFunctionsFromParser();
+        } catch (StackOverflowError e) {
+            overflowedModules.incrementAndGet();
+            this.loadFunctionsWithoutParser("is nested too deeply to be parsed");
+        } catch (ParseTimeoutException e) {
+            timedOutModules.incrementAndGet();
+            this.loadFunctionsWithoutParser(MessageFormat.format("took longer than {0} ms to parse",
+                    this.config.parseTimeoutMillis));
+        }
+    }
+
+    /**
+     * Load functions following the tokens of the lexer only after the parser has given up.
+     */
+    private void loadFunctionsWithoutParser(String reason) {
+        this.pyModule.functions.clear();
+        if (this.errorListener != null) {
+            this.errorListener.diagnostics.clear();
+        }
+        if (!this.loadFunctionsFromOutline()) {
+            skippedModules.incrementAndGet();
+            throw new IllegalStateException(MessageFormat.format("{0} {1} and was skipped",
+                    this.sourcePath(), reason));
+        }
+    }
+
+    private String sourcePath() {
+        return new File(this.pyModule.baseDir, this.pyModule.nameWithExt).getPath();
+    }
+
+    private CollectingErrorListener newErrorListener() {
+        return new CollectingErrorListener(this.sourcePath());
+    }
+
+    /**
+     * Get a lexer of the module reporting the syntax errors to the listener,
+     * or throwing an exception for the first one if there is no listener.
+     */
+    private Python3Lexer newLexer(CollectingErrorListener errorListener) {
+        this.input.seek(0);
+        if (this.config.reuseParsers) {
+            return ParserPool.lexer(this.input, errorListener);
+        }
+        Builder.Lexer lexer = new Builder.Lexer(this.input);
+        if (errorListener != null) {
+            lexer.withErrorListener(errorListener);
+        }
+        return lexer.build();
+    }
+
+    /**
+     * Get a parser of the tokens reporting the syntax errors to the listener,
+     * or throwing an exception for the first one if there is no listener.
+     */
+    private Python3Parser newParser(TokenSource tokenSource, CollectingErrorListener errorListener) {
+        Builder.Parser parser;
+        if (this.config.compactTokens) {
+            CompactTokenStream tokens = new CompactTokenStream(tokenSource);
+            if (this.config.reuseParsers) {
+                return this.instrument(ParserPool.parser(tokens, errorListener));
+            }
+            parser = new Builder.Parser(tokens);
+        } else if (this.config.reuseParsers) {
+            return this.instrument(ParserPool.parser(tokenSource, errorListener));
+        } else {
+            parser = new Builder.Parser(tokenSource);
+        }
+        if (errorListener != null) {
+            parser.withErrorListener(errorListener);
+        }
+        return this.instrument(parser.build());
+    }
+
+    /**
+     * Make the parser profile its decisions if the profile is reported, or else give up when
+     * the time budget of the module runs out, if there is one.
+     */
+    private Python3Parser instrument(Python3Parser parser) {
+        if (this.config.profileReportPath != null) {
+            ParserProfile.enable(parser);
+        } else if (this.config.parseTimeoutMillis > 0) {
+            parser.setInterpreter(new DeadlineATNSimulator(parser,
+                    parser.getInterpreter().getSharedContextCache(), this.deadlineNanos));
+        }
+        return parser;
+    }
+
+    /**
+     * Load functions following the tokens of the lexer only.
+     * Returns false if the module has to be parsed instead.
+     */
+    private boolean loadFunctionsFromOutline() {
+        try {
+            return new OutlineExtractor(this.newLexer(null)).extract(
+                    (parent, name, offset) -> addFunction(this.pyModule.functions, parent, name, offset));
+        } catch (RuntimeException e) {
+            // the module cannot be tokenized, the parser reports the error
+            return false;
+        }
+    }
+
+    /**
+     * Load functions parsing the module, in chunks if the module is large.
+     */
+    private void loadFunctionsFromParser() {
+        if (this.config.chunkThresholdChars > 0 && this.input.size() >= this.config.chunkThresholdChars) {
+            this.loadFunctionsInChunks();
+        } else {
+            this.parseFunctions(this.newParser(this.newLexer(this.errorListener), this.errorListener),
+                    this.pyModule.functions);
+        }
+    }
+
+    /**
+     * Load functions of a large module splitting it into chunks of top-level statements
+     * which are parsed in parallel; the functions of the chunks are merged in the source order.
+     */
+    private void loadFunctionsInChunks() {
+        // the whole module is tokenized, a def at the start of a line may be in a string or in brackets,
+        // which only the lexer tells apart; the lexing costs little next to the parsing of the chunks
+        CommonTokenStream tokens = new CommonTokenStream(this.newLexer(this.errorListener));
+        tokens.fill();
+        int chunkChars = Math.max(this.config.chunkThresholdChars / 4,
+                this.input.size() / (4 * Runtime.getRuntime().availableProcessors()));
+        List<List<Token>> chunks = ModuleChunker.split(tokens.getTokens(), chunkChars);
+        chunkedModules.incrementAndGet();
+        parsedChunks.addAndGet(chunks.size());
+
+        List<CollectingErrorListener> listeners = new ArrayList<>();
+        List<List<PyFunction>> functions = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            listeners.add(this.errorListener == null ? null : this.newErrorListener());
+            functions.add(new ArrayList<>());
+        }
+        // the chunks are parsed on threads with as large a stack as the module would be parsed with whole
+        List<Callable<Void>> parses = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            int chunk = i;
+            parses.add(() -> {
+                this.parseFunctions(this.newParser(new ListTokenSource(chunks.get(chunk),
+                        this.input.getSourceName()), listeners.get(chunk)), functions.get(chunk));
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> parse : chunkPool(this.config.parseStackBytes).invokeAll(parses)) {
+                parse.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the chunks of the module", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            this.pyModule.functions.addAll(functions.get(i));
+            if (listeners.get(i) != null) {
+                this.diagnostics.addAll(listeners.get(i).diagnostics);
+            }
+        }
+    }
+
+    /**
+     * Get the pool parsing the chunks, whose threads have the given stack size.
+     */
+    private static synchronized ExecutorService chunkPool(long stackBytes) {
+        if (chunkPool == null || chunkPoolStackBytes != stackBytes) {
+            if (chunkPool != null) {
+                chunkPool.shutdown();
+            }
+            chunkPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new WorkerThreadFactory("chunk", stackBytes));
+            chunkPoolStackBytes = stackBytes;
+        }
+        return chunkPool;
+    }
+
+    /**
+     * Parse the module, or a chunk of it, with the configured engine and collect its functions.
+     */
+    private void parseFunctions(Python3Parser parser, List<PyFunction> functions) {
+        try {
+            if (this.config.extractionEngine == ExtractionEngine.STREAMING) {
+                this.parseFunctionsWhileParsing(parser, functions);
+            } else {
+                OutlineWalker.walk(new FileInputParser(parser, this.config.parseMode).parse(),
+                        (parent, name, offset) -> addFunction(functions, parent, name, offset));
+            }
+        } finally {
+            ParserProfile.record(parser);
+        }
+    }
+
+    /**
+     * Collect functions from the parse events without building the parse tree.
+     * Only the contexts of the rules being parsed and their tokens are kept in memory,
+     * and the contexts refer to their parents, so the enclosing class is still known.
+     */
+    private void parseFunctionsWhileParsing(Python3Parser python3Parser, List<PyFunction> functions) {
+        python3Parser.setBuildParseTree(false);
+        int loaded = functions.size();
+        python3Parser.addParseListener(new Python3BaseListener() {
 
             @Override
-            public void enterFuncdef(Python3Parser.FuncdefContext ctx) {
-                String functionName = ctx.NAME().getText();
-                // function parameters are not of interest, but can be obtained with
-                // String functionParams = ctx.parameters().getText();
-
-                // get context of function definition
-                ArrayList<ParserRuleContext> parents = new ArrayList<>();
-                parents.add(ctx.getParent());
-                int maxNestLevel = 100;
-                for (int lastParentIndex = 0; lastParentIndex < maxNestLevel; lastParentIndex++) {
-                    ParserRuleContext parent = getParent(parents.get(lastParentIndex));
-                    // module level function
-                    if (parent == null) {
-                        if (isTestableFunction(functionName)) {
-                            pyModule.functions
-                                    .add(new PyFunction(".", functionName, getFunctionDocstring()));
-                        }
-                        break;
+            public void enterEveryRule(ParserRuleContext ctx) {
+                // the module is parsed again if the SLL prediction fails
+                if (ctx instanceof Python3Parser.File_inputContext) {
+                    functions.subList(loaded, functions.size()).clear();
+                }
+            }
 
-                    }
-                    // nested functions are not of interest but can be obtained with
-                    // if (parent instanceof Python3Parser.FuncdefContext)
-
-                    // class method
-                    if (parent instanceof Python3Parser.ClassdefContext) {
-                        if (isTestableFunction(functionName)) {
-                            PyFunction func = new PyFunction(
-                                    ((Python3Parser.ClassdefContext) parent).NAME().getText(), functionName,
-                                    getFunctionDocstring());
-                            pyModule.functions.add(func);
+            @Override
+            public void visitTerminal(TerminalNode node) {
+                // the name right after `def` is the only NAME the function definition owns
+                if (node.getSymbol().getType() == Python3Parser.NAME
+                        && node.getParent() instanceof Python3Parser.FuncdefContext) {
+                    Python3Parser.FuncdefContext funcdef = (Python3Parser.FuncdefContext) node.getParent();
+                    ParserRuleContext parent = funcdef.getParent();
+                    String className = null;
+                    for (; parent != null && className == null; parent = getParent(parent)) {
+                        if (parent instanceof Python3Parser.ClassdefContext) {
+                            // the name of the class is missing if the parser recovered from an error
+                            TerminalNode name = ((Python3Parser.ClassdefContext) parent).NAME();
+                            className = name == null ? null : name.getText();
                         }
-                        break;
                     }
-                    parents.add(parent);
+                    addFunction(functions, className == null ? "." : className, node.getText(),
+                            OutlineWalker.definitionStart(funcdef));
                 }
             }
-        }, this.parser.file_input());
+        });
+        new FileInputParser(python3Parser, this.config.parseMode).parse();
     }
 
     /**
-     * Get parent of an object in the AST tree.
+     * Add a function to the list if it should be tested.
      */
-    private static ParserRuleContext getParent(ParserRuleContext parent) {
-        return parent.getParent();
+    private void addFunction(List<PyFunction> functions, String parent, String functionName, int offset) {
+        if (isTestableFunction(functionName)) {
+            functions.add(new PyFunction(parent, functionName, offset, this.definitions));
+        }
     }
 
     /**
-     * Get source function docstring.
+     * Get summary of how many large modules have been parsed in chunks.
      */
-    private String getFunctionDocstring() {
-        // implement this method if the source function docstring will ever be required
-        return "function docstring";
+    public static String chunkStatistics() {
+        return MessageFormat.format("Parsed {0} large modules in {1} chunks", chunkedModules.get(),
+                parsedChunks.get());
+    }
+
+    /**
+     * Get summary of the modules the parser gave up on.
+     */
+    public static String fallbackStatistics() {
+        return MessageFormat.format("The parser ran out of stack for {0} modules and out of time for {1} modules, "
+                + "their functions were extracted from the tokens except for {2} skipped modules",
+                overflowedModules.get(), timedOutModules.get(), skippedModules.get());
+    }
+
+    /**
+     * Get parent of an object in the AST tree.
+     */
+    private static ParserRuleContext getParent(ParserRuleContext parent) {
+        return parent.getParent();
     }
 
     /**
@@ -0,0 +1,172 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loading of the Python source files into the character streams of the lexer.
+ * The files are memory-mapped (small files are read at once) and pure ASCII sources are lexed
+ * straight from the bytes; only the sources with other characters are decoded.
+ * The encoding is UTF-8 unless declared by the coding cookie of PEP 263.
+ */
+public final class SourceStreams {
+
+    // files smaller than this are read into memory, mapping them costs more than reading
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final Pattern CODING_COOKIE = Pattern.compile(
+            "^[ \\t\\f]*#.*?coding[:=][ \\t]*([-\\w.]+)");
+
+    private SourceStreams() {
+    }
+
+    /**
+     * Open the source file as a character stream of the lexer.
+     */
+    public static CharStream open(Path path) throws IOException {
+        return open(read(path), path.toString());
+    }
+
+    /**
+     * Get the bytes of the source file, mapping it into memory unless it is small.
+     */
+    public static ByteBuffer read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file is too large: " + path);
+            }
+            if (size < MAP_THRESHOLD) {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Open the source bytes from the position to the limit of the buffer as a character stream.
+     */
+    public static CharStream open(ByteBuffer buffer, String name) throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        boolean bom = hasUtf8Bom(buffer);
+        if (bom) {
+            buffer.position(buffer.position() + UTF8_BOM.length);
+        }
+        String cookie = findCodingCookie(buffer);
+        if (cookie != null) {
+            charset = forCookie(cookie, name);
+            if (bom && !charset.equals(StandardCharsets.UTF_8)) {
+                throw new IOException(name + ": encoding problem: " + cookie + " with BOM");
+            }
+        }
+
+        // ASCII is a subset of every encoding a Python source can be written in
+        if (isAscii(buffer) || charset.equals(StandardCharsets.ISO_8859_1)) {
+            return new ByteBufferCharStream(buffer, name);
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        return CharStreams.fromString(decoder.decode(buffer.duplicate()).toString(), name);
+    }
+
+    private static boolean hasUtf8Bom(ByteBuffer buffer) {
+        if (buffer.remaining() < UTF8_BOM.length) {
+            return false;
+        }
+        for (int i = 0; i < UTF8_BOM.length; i++) {
+            if (buffer.get(buffer.position() + i) != UTF8_BOM[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the encoding declared in one of the first two lines of the source, if any.
+     */
+    static String findCodingCookie(ByteBuffer buffer) {
+        int lineStart = buffer.position();
+        for (int line = 0; line < 2 && lineStart < buffer.limit(); line++) {
+            int lineEnd = lineStart;
+            while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            byte[] bytes = new byte[lineEnd - lineStart];
+            ByteBuffer view = buffer.duplicate();
+            view.position(lineStart);
+            view.get(bytes);
+            String text = new String(bytes, StandardCharsets.ISO_8859_1);
+            Matcher matcher = CODING_COOKIE.matcher(text);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+            // the cookie can be on the second line only if the first one is a comment or blank
+            String trimmed = text.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                return null;
+            }
+            lineStart = lineEnd;
+            if (lineStart < buffer.limit() && buffer.get(lineStart) == '\r') {
+                lineStart++;
+            }
+            if (lineStart < buffer.limit() && buffer.get(lineStart) == '\n') {
+                lineStart++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the charset of a coding cookie, normalizing the names the same way Python does.
+     */
+    static Charset forCookie(String cookie, String name) throws IOException {
+        String normalized = cookie.toLowerCase().replace('_', '-');
+        if (normalized.equals("utf-8") || normalized.startsWith("utf-8-")) {
+            return StandardCharsets.UTF_8;
+        }
+        if (normalized.matches("(latin-1|iso-8859-1|iso-latin-1)(-.*)?")) {
+            return StandardCharsets.ISO_8859_1;
+        }
+        try {
+            return Charset.forName(normalized);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IOException(name + ": unknown encoding: " + cookie);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        int index = buffer.position();
+        int limit = buffer.limit();
+        for (; index + Long.BYTES <= limit; index += Long.BYTES) {
+            if ((buffer.getLong(index) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; index < limit; index++) {
+            if (buffer.get(index) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
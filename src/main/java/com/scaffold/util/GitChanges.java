@@ -0,0 +1,96 @@
+package com.scaffold.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Files of a repository changed since a base revision, as told by the local `git` binary.
+ */
+public class GitChanges {
+
+    public static final String gitCommand = "git";
+
+    /**
+     * Get the root of the repository the directory belongs to.
+     */
+    public static Path repositoryRoot(Path directory) throws IOException {
+        return directory.toAbsolutePath().getFileSystem()
+                .getPath(git(directory, "rev-parse", "--show-toplevel").trim()).normalize();
+    }
+
+    /**
+     * Get the absolute paths of the files of the repository which have been added or modified
+     * since the base revision or since the branch has forked from it, in their order in the repository,
+     * along with the files which are modified in the working tree and the new files git does not ignore.
+     */
+    public static List<Path> changedFiles(Path repositoryRoot, String baseRef) throws IOException {
+        String base = git(repositoryRoot, "merge-base", baseRef, "HEAD").trim();
+        // the renamed files are new files at their new paths
+        TreeSet<String> files = new TreeSet<>(split(git(repositoryRoot,
+                "diff", "--name-only", "-z", "--no-renames", "--diff-filter=AM", base, "--")));
+        files.addAll(split(git(repositoryRoot, "ls-files", "-z", "--others", "--exclude-standard")));
+
+        List<Path> paths = new ArrayList<>();
+        for (String file : files) {
+            paths.add(repositoryRoot.resolve(file));
+        }
+        return paths;
+    }
+
+    private static List<String> split(String output) {
+        List<String> files = new ArrayList<>(Arrays.asList(output.split("\0")));
+        files.removeIf(String::isEmpty);
+        return files;
+    }
+
+    /**
+     * Run git in the directory and get its output, failing if git fails.
+     */
+    private static String git(Path directory, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(gitCommand);
+        command.add("-C");
+        command.add(directory.toString());
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command).start();
+        process.getOutputStream().close();
+        // the errors are read alongside, so git never waits for either of the pipes to be drained
+        CompletableFuture<String> errors = CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(process.getErrorStream());
+            } catch (IOException e) {
+                return e.getMessage();
+            }
+        });
+        String output = read(process.getInputStream());
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(MessageFormat.format("{0} failed with exit code {1}: {2}",
+                        String.join(" ", command), exitCode, errors.join().trim()));
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git", e);
+        }
+        return output;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        try (InputStream input = stream) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            input.transferTo(output);
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
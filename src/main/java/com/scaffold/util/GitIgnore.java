@@ -0,0 +1,168 @@
+package com.scaffold.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Ignore rules of git which apply to the contents of a directory: the rules of the `.gitignore` files
+ * of the directory and of its parents up to the root of the repository, and the rules of `.git/info/exclude`.
+ * The rules of a directory are read once and are inherited by its subdirectories, a deeper file taking
+ * precedence over the files above it and the last matching rule of a file deciding, as it does for git.
+ * The paths are expected to be absolute and normalized.
+ */
+public class GitIgnore {
+
+    public static final String gitIgnoreFileName = ".gitignore";
+
+    // the rules of no directory
+    public static final GitIgnore none = new GitIgnore(null, null, Collections.emptyList());
+
+    private final GitIgnore parent;
+    private final Path directory;
+    private final List<Rule> rules;
+
+    private GitIgnore(GitIgnore parent, Path directory, List<Rule> rules) {
+        this.parent = parent;
+        this.directory = directory;
+        this.rules = rules;
+    }
+
+    /**
+     * Get whether the directory is the root of a repository (or of a submodule or a worktree, where `.git` is a file).
+     */
+    public static boolean isRepository(Path directory) {
+        return Files.exists(directory.resolve(".git"));
+    }
+
+    /**
+     * Get the rules of the directory, which has these rules as the rules of its parent.
+     * The root of a repository does not inherit the rules of the directories above it.
+     */
+    public GitIgnore enter(Path directory) throws IOException {
+        GitIgnore rules = this;
+        if (isRepository(directory)) {
+            rules = new GitIgnore(null, directory, read(directory.resolve(".git").resolve("info").resolve("exclude")));
+        }
+        List<Rule> own = read(directory.resolve(gitIgnoreFileName));
+        return own.isEmpty() ? rules : new GitIgnore(rules, directory, own);
+    }
+
+    /**
+     * Get whether the path in the directory of these rules is ignored. Its parent directories are expected
+     * not to be ignored, as git does not look into the ignored directories.
+     */
+    public boolean isIgnored(Path path, boolean directory) {
+        for (GitIgnore level = this; level != null; level = level.parent) {
+            if (level.rules.isEmpty() || !path.startsWith(level.directory)) {
+                continue;
+            }
+            String relative = relative(level.directory, path);
+            for (int i = level.rules.size() - 1; i >= 0; i--) {
+                Rule rule = level.rules.get(i);
+                if ((directory || !rule.directoryOnly) && rule.pattern.matcher(relative).matches()) {
+                    return !rule.negated;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String relative(Path directory, Path path) {
+        StringBuilder relative = new StringBuilder();
+        for (Path name : directory.relativize(path)) {
+            if (relative.length() > 0) {
+                relative.append('/');
+            }
+            relative.append(name);
+        }
+        return relative.toString();
+    }
+
+    private static List<Rule> read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Rule rule = Rule.parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Line of an ignore file compiled to the expression of the paths relative to the directory of the file.
+     */
+    static final class Rule {
+        final Pattern pattern;
+        final boolean negated;
+        final boolean directoryOnly;
+
+        private Rule(Pattern pattern, boolean negated, boolean directoryOnly) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+        }
+
+        /**
+         * Compile the line, or get null for the blank lines and the comments.
+         */
+        static Rule parse(String line) {
+            // the trailing spaces are dropped unless they are escaped
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            String pattern = line.substring(0, end);
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return null;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            // a pattern with a separator is relative to the directory, a name matches at any depth
+            boolean anchored = pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                return null;
+            }
+            String regex = regex(pattern);
+            return new Rule(Pattern.compile(anchored ? regex : "(?:.*/)?" + regex, Pattern.DOTALL),
+                    negated, directoryOnly);
+        }
+
+        private static String regex(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            String[] names = pattern.split("/", -1);
+            for (int n = 0; n < names.length; n++) {
+                String name = names[n];
+                boolean last = n == names.length - 1;
+                if (name.equals("**")) {
+                    // any number of directories, or everything inside at the end
+                    regex.append(last ? ".*" : "(?:.*/)?");
+                    continue;
+                }
+                GlobMatcher.appendRegex(name, regex);
+                if (!last) {
+                    regex.append('/');
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.scaffold.util;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Matcher of paths against a list of glob patterns in the style of gitignore.
+ * A pattern is a list of names separated by /, which may have the wildcards * and ? and the classes [...],
+ * and ** stands for any number of directories. A pattern matches whole names, so `tests` does not match
+ * `contests`, and it may start at any directory of the path unless it starts with /.
+ * A path is matched if a pattern matches the path or one of its parent directories. The paths are matched
+ * as they are given, so they have to be relative to the directory the patterns are anchored at, such as a source path.
+ * <p>
+ * All patterns are compiled into one automaton over the names of a path, whose states are built
+ * the first time they are reached and remember where each name leads, so matching a path costs a lookup
+ * per name whatever the number of patterns. A state that matches, or that no pattern can match from any more,
+ * decides the rest of the path, so a directory can be accepted or rejected before its contents are looked at.
+ */
+public class GlobMatcher {
+
+    // names remembered by a state, beyond which the transitions are computed every time
+    private static final int CACHED_NAMES = 4096;
+
+    // the names of all patterns one after another, each pattern followed by null which is its match
+    private final Segment[] segments;
+    private final Map<BitSet, State> states = new ConcurrentHashMap<>();
+    private final State start;
+
+    /**
+     * Compile the patterns. The empty patterns are left out.
+     */
+    public GlobMatcher(Collection<String> patterns) {
+        List<Segment> segments = new ArrayList<>();
+        BitSet start = new BitSet();
+        for (String pattern : patterns) {
+            List<Segment> names = compile(pattern);
+            if (!names.isEmpty()) {
+                start.set(segments.size());
+                segments.addAll(names);
+                segments.add(null);
+            }
+        }
+        this.segments = segments.toArray(new Segment[0]);
+        this.start = this.state(start);
+    }
+
+    /**
+     * Get whether a pattern matches the path or one of its parent directories.
+     */
+    public boolean matches(Path path) {
+        State state = this.start;
+        for (Path name : path) {
+            if (state.isDecided()) {
+                break;
+            }
+            state = state.next(name.toString());
+        }
+        return state.isMatch();
+    }
+
+    /**
+     * Get the state before the first name of a path.
+     */
+    public State start() {
+        return this.start;
+    }
+
+    private static List<Segment> compile(String pattern) {
+        List<Segment> names = new ArrayList<>();
+        String path = pattern.trim();
+        if (!path.startsWith("/")) {
+            names.add(Segment.ANY_PATH);
+        }
+        for (String name : path.split("/")) {
+            if (name.isEmpty() || name.equals(".")) {
+                continue;
+            }
+            Segment segment = Segment.of(name);
+            // the repeated ** match the same paths as one
+            if (segment != Segment.ANY_PATH || names.isEmpty() || names.get(names.size() - 1) != Segment.ANY_PATH) {
+                names.add(segment);
+            }
+        }
+        if (names.size() == 1 && names.get(0) == Segment.ANY_PATH && !path.contains("**")) {
+            // nothing but separators
+            names.clear();
+        }
+        return names;
+    }
+
+    /**
+     * Append the regular expression matching the same names as a name of a pattern, which may have
+     * the wildcards * and ?, the classes [...] and the escapes with \. None of them matches a separator.
+     * Returns whether the name has any wildcards or classes.
+     */
+    static boolean appendRegex(String name, StringBuilder regex) {
+        boolean wildcards = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\\' && i + 1 < name.length()) {
+                regex.append(Pattern.quote(String.valueOf(name.charAt(++i))));
+            } else if (c == '*') {
+                wildcards = true;
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                wildcards = true;
+                regex.append("[^/]");
+            } else if (c == '[' && classEnd(name, i) > 0) {
+                wildcards = true;
+                int end = classEnd(name, i);
+                String members = name.substring(i + 1, end);
+                regex.append('[');
+                boolean negated = members.startsWith("!") || members.startsWith("^");
+                if (negated) {
+                    regex.append('^');
+                    members = members.substring(1);
+                }
+                if (members.startsWith("]")) {
+                    regex.append("\\]");
+                    members = members.substring(1);
+                }
+                regex.append(members.replace("\\", "\\\\").replace("[", "\\[").replace("&", "\\&"));
+                regex.append(negated ? "/]" : "]");
+                i = end;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return wildcards;
+    }
+
+    /**
+     * Get the index of the ] closing the class opened at the index, or -1 if the class is not closed.
+     * The first ] of the class, after the negation if there is one, is one of its members.
+     */
+    private static int classEnd(String name, int open) {
+        int first = open + 1;
+        if (first < name.length() && (name.charAt(first) == '!' || name.charAt(first) == '^')) {
+            first++;
+        }
+        return name.indexOf(']', first + 1);
+    }
+
+    private State state(BitSet positions) {
+        // the ** may be skipped, the positions are visited in order so the chains of them are skipped too
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            if (this.segments[i] == Segment.ANY_PATH) {
+                positions.set(i + 1);
+            }
+        }
+        return this.states.computeIfAbsent(positions, State::new);
+    }
+
+    /**
+     * State of the matching after some names of a path.
+     */
+    public final class State {
+
+        private final BitSet positions;
+        private final boolean match;
+        private final Map<String, State> next = new ConcurrentHashMap<>();
+
+        private State(BitSet positions) {
+            this.positions = positions;
+            boolean match = false;
+            for (int i = positions.nextSetBit(0); i >= 0 && !match; i = positions.nextSetBit(i + 1)) {
+                match = segments[i] == null;
+            }
+            this.match = match;
+        }
+
+        /**
+         * Get the state after the next name of the path.
+         */
+        public State next(String name) {
+            if (this.isDecided()) {
+                return this;
+            }
+            State state = this.next.get(name);
+            if (state == null) {
+                BitSet positions = new BitSet();
+                for (int i = this.positions.nextSetBit(0); i >= 0; i = this.positions.nextSetBit(i + 1)) {
+                    if (segments[i] == Segment.ANY_PATH) {
+                        positions.set(i);
+                    } else if (segments[i].matches(name)) {
+                        positions.set(i + 1);
+                    }
+                }
+                state = state(positions);
+                if (this.next.size() < CACHED_NAMES) {
+                    this.next.put(name, state);
+                }
+            }
+            return state;
+        }
+
+        /**
+         * Get whether a pattern matches the names so far, and so every path under them.
+         */
+        public boolean isMatch() {
+            return this.match;
+        }
+
+        /**
+         * Get whether the names so far decide the match of every path under them.
+         */
+        public boolean isDecided() {
+            return this.match || this.positions.isEmpty();
+        }
+    }
+
+    /**
+     * Name of a pattern.
+     */
+    private static final class Segment {
+
+        static final Segment ANY_PATH = new Segment(null, null);
+
+        private final String literal;
+        private final Pattern glob;
+
+        private Segment(String literal, Pattern glob) {
+            this.literal = literal;
+            this.glob = glob;
+        }
+
+        static Segment of(String name) {
+            if (name.equals("**")) {
+                return ANY_PATH;
+            }
+            StringBuilder regex = new StringBuilder();
+            return appendRegex(name, regex) ? new Segment(null, Pattern.compile(regex.toString(), Pattern.DOTALL))
+                    : new Segment(name.replaceAll("\\\\(.)", "$1"), null);
+        }
+
+        boolean matches(String name) {
+            return this.literal != null ? this.literal.equals(name) : this.glob.matcher(name).matches();
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package com.scaffold.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.scaffold.writer.PyModule.pythonModuleExtension;
+
+/**
+ * Discovery of the Python modules under the source paths.
+ * The directories to skip are pruned while walking, so nothing below them is ever listed,
+ * and the subdirectories are walked in parallel by the common fork/join pool.
+ * The modules are returned in the order of the source paths, each directory in the order of its listing
+ * (the same order {@link Files#walk} has), and a module reachable from several source paths
+ * (or through several links) is returned only once.
+ * <p>
+ * The discovery may also leave out what git ignores in the repository of the source paths: the rules of
+ * the `.gitignore` files and of `.git/info/exclude` are read as the walk reaches their directories,
+ * and the ignored directories are never entered.
+ * <p>
+ * The modules may also be streamed while the walk is still running, either as soon as the parallel walk
+ * finds them or in the order of their names, directory by directory.
+ */
+public class ModuleDiscovery {
+
+    // metadata directories of the version control systems and caches of the compiled modules,
+    // which never have modules to test
+    public static final List<String> metadataDirectories = Arrays.asList(".git", ".hg", ".svn", "__pycache__");
+
+    // modules found by the parallel walk and not taken by the stream yet, beyond which the walk waits
+    static final int STREAM_CAPACITY = 1024;
+
+    private final Predicate<Path> skipDirectory;
+    private final boolean gitIgnore;
+    // the ignore rules of the directories from the root of the repository down to the source paths
+    private final Map<Path, GitIgnore> sourceRules = new ConcurrentHashMap<>();
+
+    /**
+     * Create the discovery skipping the directories the predicate holds for, along with all their contents.
+     * The predicate is given the path of a directory relative to the source path it is found under,
+     * the source paths themselves are always walked.
+     */
+    public ModuleDiscovery(Predicate<Path> skipDirectory) {
+        this(skipDirectory, false);
+    }
+
+    /**
+     * Create the discovery skipping the directories the predicate holds for, along with all their contents,
+     * and skipping what git ignores if asked for.
+     */
+    public ModuleDiscovery(Predicate<Path> skipDirectory, boolean gitIgnore) {
+        this.skipDirectory = skipDirectory;
+        this.gitIgnore = gitIgnore;
+    }
+
+    /**
+     * Get the modules under the source paths. A path to a file is taken as it is, whatever its extension,
+     * and the paths which do not exist are ignored.
+     */
+    public List<Path> discover(List<Path> sourcePaths) throws IOException {
+        List<Module> modules = new ArrayList<>();
+        try {
+            for (Path sourcePath : sourcePaths) {
+                Object root = this.root(sourcePath);
+                if (root instanceof Module) {
+                    modules.add((Module) root);
+                } else if (root instanceof Directory) {
+                    modules.addAll(new DirectoryWalk((Directory) root).invoke());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Set<Object> seen = new HashSet<>();
+        List<Path> paths = new ArrayList<>();
+        for (Module module : modules) {
+            if (seen.add(module.key)) {
+                paths.add(module.path);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Get the modules under the source paths as a lazy stream, which walks the directories as the modules are taken.
+     * If sorted, the directories are walked one after another and the entries of each directory are taken
+     * in the order of their names, so the order is the same in every run. Otherwise the walk runs in parallel
+     * in the background, ahead of the stream by at most {@value #STREAM_CAPACITY} modules, and the modules come
+     * in the order they are found. The failures to read a directory are thrown as {@link UncheckedIOException}.
+     * Closing the stream stops the background walk, so a stream which is not taken to its end has to be closed.
+     */
+    public Stream<Path> stream(List<Path> sourcePaths, boolean sorted) {
+        if (sorted) {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new SortedWalk(sourcePaths),
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+        }
+        BackgroundWalk modules = new BackgroundWalk(sourcePaths);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(modules,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false).onClose(modules::cancel);
+    }
+
+    /**
+     * Get the files among the given ones which the discovery of the source paths would find, in their order,
+     * without walking the source paths. The files are checked against the same rules on the way down
+     * from the source path containing them, and they are returned as the discovery would return them.
+     */
+    public List<Path> select(List<Path> sourcePaths, List<Path> files) throws IOException {
+        // the roots and their real paths, which the real paths of the files are compared to
+        List<Object> roots = new ArrayList<>();
+        List<Path> realRoots = new ArrayList<>();
+        for (Path sourcePath : sourcePaths) {
+            Object root = this.root(sourcePath);
+            if (root != null) {
+                roots.add(root);
+                realRoots.add(sourcePath.toRealPath());
+            }
+        }
+        // the rules of the directories of the files already checked
+        Map<Path, GitIgnore> rules = new HashMap<>();
+
+        Set<Object> seen = new HashSet<>();
+        List<Path> paths = new ArrayList<>();
+        for (Path file : files) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            Path realFile = file.toRealPath();
+            for (int i = 0; i < roots.size(); i++) {
+                Module module;
+                if (roots.get(i) instanceof Module) {
+                    module = realRoots.get(i).equals(realFile) ? (Module) roots.get(i) : null;
+                } else if (realFile.startsWith(realRoots.get(i)) && !realFile.equals(realRoots.get(i))) {
+                    module = this.find((Directory) roots.get(i), realRoots.get(i).relativize(realFile), rules);
+                } else {
+                    continue;
+                }
+                if (module != null && seen.add(module.key)) {
+                    paths.add(module.path);
+                }
+                break;
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Find the module at the relative path under the directory, or get null if the walk would not find it.
+     */
+    private Module find(Directory directory, Path relative, Map<Path, GitIgnore> rulesCache) throws IOException {
+        Path path = directory.path;
+        Path absolute = path.toAbsolutePath().normalize();
+        GitIgnore rules = directory.inheritedRules;
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (rules != null) {
+                GitIgnore cached = rulesCache.get(absolute);
+                if (cached == null) {
+                    cached = rules.enter(absolute);
+                    rulesCache.put(absolute, cached);
+                }
+                rules = cached;
+            }
+            String name = relative.getName(i).toString();
+            path = path.resolve(name);
+            absolute = absolute.resolve(name);
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (rules != null && rules.isIgnored(absolute, attributes.isDirectory())) {
+                return null;
+            }
+            if (i == relative.getNameCount() - 1) {
+                return module(path, attributes);
+            }
+            if (!attributes.isDirectory() || metadataDirectories.contains(name)
+                    || this.skipDirectory.test(relative.subpath(0, i + 1))) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the source path as a module or as a directory to walk, or null if there is nothing to discover.
+     */
+    private Object root(Path sourcePath) throws IOException {
+        if (Files.isRegularFile(sourcePath)) {
+            return new Module(sourcePath, fileKey(sourcePath,
+                    Files.readAttributes(sourcePath, BasicFileAttributes.class)));
+        } else if (Files.isDirectory(sourcePath)) {
+            return new Directory(sourcePath, sourcePath.getFileSystem().getPath(""),
+                    this.gitIgnore ? this.rulesAbove(sourcePath) : null);
+        }
+        return null;
+    }
+
+    /**
+     * Get the ignore rules the source directory inherits, which are those of the directories from the root
+     * of its repository down to its parent. Outside a repository only the rules under the directory apply.
+     */
+    private GitIgnore rulesAbove(Path sourcePath) throws IOException {
+        Path directory = sourcePath.toAbsolutePath().normalize();
+        Deque<Path> directories = new ArrayDeque<>();
+        for (Path parent = directory; parent != null; parent = parent.getParent()) {
+            directories.push(parent);
+            if (GitIgnore.isRepository(parent)) {
+                break;
+            }
+        }
+        if (!GitIgnore.isRepository(directories.peek())) {
+            return GitIgnore.none;
+        }
+        // the source directory is entered by its walk
+        directories.removeLast();
+
+        GitIgnore rules = GitIgnore.none;
+        for (Path parent : directories) {
+            GitIgnore cached = this.sourceRules.get(parent);
+            if (cached == null) {
+                cached = rules.enter(parent);
+                this.sourceRules.put(parent, cached);
+            }
+            rules = cached;
+        }
+        return rules;
+    }
+
+    /**
+     * List the modules and the subdirectories to walk of the directory in the order of the listing.
+     */
+    private List<Object> list(Directory directory) throws IOException {
+        List<Object> entries = new ArrayList<>();
+        try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory.path)) {
+            // the rules are matched against the absolute paths, which are resolved once for the directory
+            Path absolute = null;
+            GitIgnore rules = null;
+            if (directory.inheritedRules != null) {
+                absolute = directory.path.toAbsolutePath().normalize();
+                rules = directory.inheritedRules.enter(absolute);
+            }
+            for (Path entry : listing) {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (rules != null && rules.isIgnored(absolute.resolve(entry.getFileName().toString()),
+                        attributes.isDirectory())) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    Path relative = directory.relative.resolve(entry.getFileName().toString());
+                    if (!metadataDirectories.contains(entry.getFileName().toString())
+                            && !this.skipDirectory.test(relative)) {
+                        entries.add(new Directory(entry, relative, rules));
+                    }
+                } else {
+                    Module module = module(entry, attributes);
+                    if (module != null) {
+                        entries.add(module);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the file as a module, or null if it is not one.
+     */
+    private static Module module(Path file, BasicFileAttributes attributes) throws IOException {
+        if (!file.getFileName().toString().endsWith(pythonModuleExtension)) {
+            return null;
+        }
+        // the links to files are followed, the links to directories are not
+        if (attributes.isSymbolicLink()) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        return attributes.isRegularFile() ? new Module(file, fileKey(file, attributes)) : null;
+    }
+
+    private static Object fileKey(Path path, BasicFileAttributes attributes) {
+        // the file systems without inodes have no file keys
+        return attributes.fileKey() != null ? attributes.fileKey() : path.toAbsolutePath().normalize();
+    }
+
+    private static String nameOf(Object entry) {
+        Path path = entry instanceof Module ? ((Module) entry).path : ((Directory) entry).path;
+        return path.getFileName().toString();
+    }
+
+    /**
+     * Module found with the key identifying its file.
+     */
+    private static final class Module {
+        final Path path;
+        final Object key;
+
+        Module(Path path, Object key) {
+            this.path = path;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Directory to walk with its path relative to the source path and the ignore rules of its parent,
+     * which are null if git ignores nothing.
+     */
+    private static final class Directory {
+        final Path path;
+        final Path relative;
+        final GitIgnore inheritedRules;
+
+        Directory(Path path, Path relative, GitIgnore inheritedRules) {
+            this.path = path;
+            this.relative = relative;
+            this.inheritedRules = inheritedRules;
+        }
+    }
+
+    /**
+     * Walk of a directory which forks a walk for every subdirectory.
+     */
+    private final class DirectoryWalk extends RecursiveTask<List<Module>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Directory directory;
+
+        DirectoryWalk(Directory directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<Module> compute() {
+            // the modules and the walks of the subdirectories in the order of the listing
+            List<Object> entries;
+            try {
+                entries = list(this.directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i) instanceof Directory) {
+                    DirectoryWalk walk = new DirectoryWalk((Directory) entries.get(i));
+                    walk.fork();
+                    entries.set(i, walk);
+                }
+            }
+
+            List<Module> modules = new ArrayList<>();
+            for (Object entry : entries) {
+                if (entry instanceof DirectoryWalk) {
+                    modules.addAll(((DirectoryWalk) entry).join());
+                } else {
+                    modules.add((Module) entry);
+                }
+            }
+            return modules;
+        }
+    }
+
+    /**
+     * Walk of the source paths running on the common fork/join pool, which hands the modules over
+     * to the stream through a bounded queue. The walk stops early once it is cancelled.
+     */
+    private final class BackgroundWalk implements Iterator<Path> {
+
+        // how long a module waits for room in the queue before the walk checks whether it is cancelled
+        private static final long OFFER_MILLIS = 100;
+
+        // put after the last module, after the failure of the walk if it fails
+        private final Object end = new Object();
+        private final BlockingQueue<Object> found = new LinkedBlockingQueue<>(STREAM_CAPACITY);
+        private final Set<Object> seen = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private Object next;
+
+        BackgroundWalk(List<Path> sourcePaths) {
+            ForkJoinPool.commonPool().execute(new SourcesWalk(sourcePaths));
+        }
+
+        /**
+         * Stop the walk, leaving out the modules it has not handed over yet.
+         */
+        void cancel() {
+            this.cancelled = true;
+            this.found.clear();
+        }
+
+        /**
+         * Hand over a module, letting the pool run another thread while the queue is full.
+         */
+        private void emit(Object entry) {
+            if (this.cancelled || entry instanceof Module && !this.seen.add(((Module) entry).key)) {
+                return;
+            }
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        // the stream may be closed while the queue is full, which is checked between the waits
+                        return cancelled || found.offer(entry, OFFER_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return cancelled || found.offer(entry);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null) {
+                try {
+                    this.next = this.found.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the modules", e);
+                }
+            }
+            if (this.next instanceof RuntimeException) {
+                throw (RuntimeException) this.next;
+            }
+            return this.next != this.end;
+        }
+
+        @Override
+        public Path next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path path = ((Module) this.next).path;
+            this.next = null;
+            return path;
+        }
+
+        /**
+         * Walk of the source paths one after another, so their modules come in their order.
+         */
+        private final class SourcesWalk extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final List<Path> sourcePaths;
+
+            SourcesWalk(List<Path> sourcePaths) {
+                this.sourcePaths = sourcePaths;
+            }
+
+            @Override
+            protected void compute() {
+                try {
+                    for (Path sourcePath : this.sourcePaths) {
+                        if (cancelled) {
+                            return;
+                        }
+                        Object root = root(sourcePath);
+                        if (root instanceof Module) {
+                            emit(root);
+                        } else if (root instanceof Directory) {
+                            new Walk((Directory) root).invoke();
+                        }
+                    }
+                } catch (IOException e) {
+                    emit(new UncheckedIOException(e));
+                } catch (RuntimeException e) {
+                    emit(e);
+                }
+                emit(end);
+            }
+        }
+
+        /**
+         * Walk of a directory which hands over its modules and forks a walk for every subdirectory.
+         */
+        private final class Walk extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final Directory directory;
+
+            Walk(Directory directory) {
+                this.directory = directory;
+            }
+
+            @Override
+            protected void compute() {
+                if (cancelled) {
+                    return;
+                }
+                List<Object> entries;
+                try {
+                    entries = list(this.directory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                List<Walk> walks = new ArrayList<>();
+                for (Object entry : entries) {
+                    if (entry instanceof Directory) {
+                        walks.add(new Walk((Directory) entry));
+                    } else {
+                        emit(entry);
+                    }
+                }
+                ForkJoinTask.invokeAll(walks);
+            }
+        }
+    }
+
+    /**
+     * Walk of the source paths one directory after another, each directory listed when its turn comes
+     * and its entries taken in the order of their names.
+     */
+    private final class SortedWalk implements Iterator<Path> {
+
+        private final Iterator<Path> sourcePaths;
+        // the entries not taken yet of the directories being walked, the innermost first
+        private final Deque<Iterator<Object>> directories = new ArrayDeque<>();
+        private final Set<Object> seen = new HashSet<>();
+        private Module next;
+
+        SortedWalk(List<Path> sourcePaths) {
+            this.sourcePaths = sourcePaths.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (this.next == null) {
+                    Object entry;
+                    if (!this.directories.isEmpty()) {
+                        Iterator<Object> entries = this.directories.peek();
+                        if (!entries.hasNext()) {
+                            this.directories.pop();
+                            continue;
+                        }
+                        entry = entries.next();
+                    } else if (this.sourcePaths.hasNext()) {
+                        entry = root(this.sourcePaths.next());
+                    } else {
+                        return false;
+                    }
+
+                    if (entry instanceof Directory) {
+                        List<Object> entries = list((Directory) entry);
+                        entries.sort(Comparator.comparing(ModuleDiscovery::nameOf));
+                        this.directories.push(entries.iterator());
+                    } else if (entry instanceof Module && this.seen.add(((Module) entry).key)) {
+                        this.next = (Module) entry;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Path next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path path = this.next.path;
+            this.next = null;
+            return path;
+        }
+    }
+}
@@ -1,17 +1,78 @@
 package com.scaffold.writer;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Representation of a Python function.
+ * Only the name and the offset of the definition in the source are kept when the module is parsed;
+ * the docstring, the parameters, the decorators and whether the function is `async` are read
+ * from the source of the module on the first access to any of them.
  */
 public class PyFunction {
+
+    /**
+     * Source of the details of the functions of a module, read from the offset of their definition.
+     */
+    public interface Source {
+        PyFunctionDetails read(int offset);
+    }
+
     public final String parent;
     public final String name;
-    public final String docstring;
+    // offset of the first character of the definition (or its decorators) in the module, -1 if unknown
+    public final int offset;
+    private final Source source;
+    private volatile PyFunctionDetails details;
 
     public PyFunction(String parent, String name, String docstring) {
+        this(parent, name, new PyFunctionDetails(docstring, Collections.emptyList(), Collections.emptyList(), false));
+    }
+
+    public PyFunction(String parent, String name, PyFunctionDetails details) {
+        this.parent = parent;
+        this.name = name;
+        this.offset = -1;
+        this.source = null;
+        this.details = details;
+    }
+
+    public PyFunction(String parent, String name, int offset, Source source) {
         this.parent = parent;
         this.name = name;
-        this.docstring = docstring;
+        this.offset = offset;
+        this.source = source;
+    }
+
+    /**
+     * Get the details of the definition, reading them from the source the first time.
+     */
+    public PyFunctionDetails getDetails() {
+        PyFunctionDetails details = this.details;
+        if (details == null) {
+            details = this.source.read(this.offset);
+            this.details = details;
+        }
+        return details;
+    }
+
+    /**
+     * Get the docstring of the function as it should be written between triple quotes, or null if there is none.
+     */
+    public String getDocstring() {
+        return this.getDetails().docstring;
+    }
+
+    public List<String> getParameters() {
+        return this.getDetails().parameters;
+    }
+
+    public List<String> getDecorators() {
+        return this.getDetails().decorators;
+    }
+
+    public boolean isAsync() {
+        return this.getDetails().async;
     }
 
     public String toString() {
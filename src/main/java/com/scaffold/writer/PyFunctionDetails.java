@@ -0,0 +1,21 @@
+package com.scaffold.writer;
+
+import java.util.List;
+
+/**
+ * Details of the definition of a Python function, read from the source only when they are needed.
+ */
+public class PyFunctionDetails {
+    // null if the function has no docstring
+    public final String docstring;
+    public final List<String> parameters;
+    public final List<String> decorators;
+    public final boolean async;
+
+    public PyFunctionDetails(String docstring, List<String> parameters, List<String> decorators, boolean async) {
+        this.docstring = docstring;
+        this.parameters = parameters;
+        this.decorators = decorators;
+        this.async = async;
+    }
+}
@@ -171,12 +171,14 @@ public class PyWriter {
         String docstring = "";
         switch (this.config.testDocstring) {
             case SOURCE:
+                // a function without a docstring gets an empty one
+                String source = function.getDocstring() == null ? "" : function.getDocstring();
                 if (this.config.testsInsideClass) {
                     docstring = MessageFormat.format("{0}{0}\"\"\"{1}\"\"\"{2}", this.indent,
-                            function.docstring, System.lineSeparator());
+                            source, System.lineSeparator());
                 } else {
                     docstring = MessageFormat.format("{0}\"\"\"{1}\"\"\"{2}", this.indent,
-                            function.docstring, System.lineSeparator());
+                            source, System.lineSeparator());
                 }
                 break;
             case EMPTY:
@@ -196,9 +198,10 @@ public class PyWriter {
     }
 
     /**
-     * Write test module on disk with all the tests.
+     * Render the test module with all the tests.
      */
-    public void writeTestsModule() throws IOException {
+    public String renderTestsModule() {
+        this.builder.setLength(0);
 
         this.addImportPackages();
 
@@ -221,7 +224,14 @@ public class PyWriter {
             this.addTestClassTearDown();
         }
 
+        return this.builder.toString();
+    }
+
+    /**
+     * Write test module on disk with all the tests.
+     */
+    public void writeTestsModule() throws IOException {
         Files.write(this.outFilePath,
-                this.builder.toString().getBytes(StandardCharsets.UTF_8));
+                this.renderTestsModule().getBytes(StandardCharsets.UTF_8));
     }
 }
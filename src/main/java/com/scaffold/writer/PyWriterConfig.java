@@ -2,21 +2,25 @@ package com.scaffold.writer;
 
 import com.scaffold.console.Definitions;
 import com.scaffold.util.FilesUtils;
+import com.scaffold.util.GitChanges;
+import com.scaffold.util.GlobMatcher;
 import com.scaffold.util.MappingUtils;
+import com.scaffold.util.ModuleDiscovery;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.scaffold.console.Definitions.*;
 import static com.scaffold.util.FilesUtils.isBusinessModule;
-import static com.scaffold.writer.PyModule.pythonModuleExtension;
 
 /**
  * Configuration class used for generating tests and saving them on disk.
@@ -24,6 +28,8 @@ import static com.scaffold.writer.PyModule.pythonModuleExtension;
 public class PyWriterConfig {
     public final Logger logger;
     public ArrayList<String> modulePaths = new ArrayList<>();
+    // the paths the modules are found under
+    private List<Path> sourcePaths = new ArrayList<>();
 
     public static final ArrayList<String> foldersToIgnoreDefault = new ArrayList<>(
             Collections.singletonList("tests"));
@@ -77,6 +83,93 @@ public class PyWriterConfig {
     public static final String testSuiteClassNameDefault = "TestCase";
     public String testSuiteClassName;
 
+    public static final int parallelismDefault = 1;
+    public int parallelism;
+
+    public static final boolean pipelineDefault = false;
+    public boolean pipeline;
+    public static final Map<String, Boolean> pipelineMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+    public static final int pipelineQueueCapacityDefault = 64;
+    public int pipelineQueueCapacity;
+    public static final int pipelineReadThreadsDefault = 2;
+    public int pipelineReadThreads;
+    public static final int pipelineParseThreadsDefault = Runtime.getRuntime().availableProcessors();
+    public int pipelineParseThreads;
+    public static final int pipelineRenderThreadsDefault = 1;
+    public int pipelineRenderThreads;
+    public static final int pipelineWriteThreadsDefault = 2;
+    public int pipelineWriteThreads;
+
+    public static final ParseMode parseModeDefault = ParseMode.SLL_LL;
+    public ParseMode parseMode;
+
+    public static final long dfaCacheMaxBytesDefault = Runtime.getRuntime().maxMemory() / 4;
+    public long dfaCacheMaxBytes;
+
+    public static final ExtractionEngine extractionEngineDefault = ExtractionEngine.PARSE_TREE;
+    public ExtractionEngine extractionEngine;
+
+    public static final boolean recoverFromErrorsDefault = false;
+    public boolean recoverFromErrors;
+    public static final Map<String, Boolean> recoverFromErrorsMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final int chunkThresholdCharsDefault = 0;
+    public int chunkThresholdChars;
+
+    public static final boolean reuseParsersDefault = false;
+    public boolean reuseParsers;
+    public static final Map<String, Boolean> reuseParsersMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final boolean compactTokensDefault = false;
+    public boolean compactTokens;
+    public static final Map<String, Boolean> compactTokensMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final int parseStackMegabytesDefault = 64;
+    public long parseStackBytes;
+
+    public static final long parseTimeoutMillisDefault = 0;
+    public long parseTimeoutMillis;
+
+    public static final boolean prefilterDefault = true;
+    public boolean prefilter;
+    public static final Map<String, Boolean> prefilterMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final List<String> generatedMarkersDefault = Collections.unmodifiableList(Arrays.asList(
+            "Generated by the protocol buffer compiler", "@generated"));
+    public List<String> generatedMarkers;
+
+    public static final long maxModuleBytesDefault = 0;
+    public long maxModuleBytes;
+
+    public static final String profileReportPathDefault = null;
+    public String profileReportPath;
+
+    public static final String dfaSnapshotPathDefault = null;
+    public String dfaSnapshotPath;
+
+    public static final boolean gitIgnoreDefault = false;
+    public boolean gitIgnore;
+    public static final Map<String, Boolean> gitIgnoreMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final boolean streamModulesDefault = false;
+    public boolean streamModules;
+    public static final Map<String, Boolean> streamModulesMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final boolean sortModulesDefault = false;
+    public boolean sortModules;
+    public static final Map<String, Boolean> sortModulesMapping = MappingUtils
+            .yesNoTrueFalseMapper();
+
+    public static final String changedSinceRefDefault = null;
+    public String changedSinceRef;
+
     public static Map<TestStateType, String> testStateMapper() {
         Map<TestStateType, String> map = new HashMap<>();
         map.put(TestStateType.PASS, "assert True");
@@ -109,6 +202,31 @@ public class PyWriterConfig {
         this.testSuiteHaveTearDown = testSuiteHaveTearDownDefault;
         this.testsInsideClass = testsInsideClassDefault;
         this.testSuiteClassName = testSuiteClassNameDefault;
+        this.parallelism = parallelismDefault;
+        this.pipeline = pipelineDefault;
+        this.pipelineQueueCapacity = pipelineQueueCapacityDefault;
+        this.pipelineReadThreads = pipelineReadThreadsDefault;
+        this.pipelineParseThreads = pipelineParseThreadsDefault;
+        this.pipelineRenderThreads = pipelineRenderThreadsDefault;
+        this.pipelineWriteThreads = pipelineWriteThreadsDefault;
+        this.parseMode = parseModeDefault;
+        this.dfaCacheMaxBytes = dfaCacheMaxBytesDefault;
+        this.extractionEngine = extractionEngineDefault;
+        this.recoverFromErrors = recoverFromErrorsDefault;
+        this.chunkThresholdChars = chunkThresholdCharsDefault;
+        this.reuseParsers = reuseParsersDefault;
+        this.compactTokens = compactTokensDefault;
+        this.parseStackBytes = parseStackMegabytesDefault * 1024L * 1024;
+        this.parseTimeoutMillis = parseTimeoutMillisDefault;
+        this.prefilter = prefilterDefault;
+        this.generatedMarkers = generatedMarkersDefault;
+        this.maxModuleBytes = maxModuleBytesDefault;
+        this.profileReportPath = profileReportPathDefault;
+        this.dfaSnapshotPath = dfaSnapshotPathDefault;
+        this.gitIgnore = gitIgnoreDefault;
+        this.streamModules = streamModulesDefault;
+        this.sortModules = sortModulesDefault;
+        this.changedSinceRef = changedSinceRefDefault;
     }
 
     /**
@@ -124,25 +242,97 @@ public class PyWriterConfig {
 
     /**
      * Get path of modules to read and then apply filters.
+     * If the modules are streamed, only the source paths are kept and nothing is walked until the modules are taken.
+     * If only the changed modules are asked for, nothing is walked and the modules git reports as changed are checked.
      */
     public void loadSourceModules(String modulePathsInput) throws IOException {
-        List<Path> paths = Collections.emptyList();
-        ArrayList<Path> fileModulePaths = new ArrayList<>();
-
+        // handle both files and folders
+        List<Path> sourcePaths = new ArrayList<>();
         for (String path : modulePathsInput.split(";")) {
-            // handle both files and folders
-            File object = new File(path);
-            if (object.isFile()) {
-                fileModulePaths.add(Paths.get(path));
-            } else if (object.isDirectory()) {
-                paths = Files.walk(Paths.get(path)).filter(Files::isRegularFile)
-                        .filter(p -> p.getFileName().toString().endsWith(pythonModuleExtension))
-                        .collect(Collectors.toList());
+            if (!path.isEmpty()) {
+                sourcePaths.add(Paths.get(path));
             }
         }
-        fileModulePaths.addAll(paths);
+        this.sourcePaths = sourcePaths;
+        if (this.changedSinceRef != null) {
+            this.loadChangedSourceModules(sourcePaths);
+            return;
+        }
+        if (this.streamModules) {
+            this.modulePaths = new ArrayList<>();
+            return;
+        }
+        GlobMatcher folders = new GlobMatcher(this.foldersToIgnore);
+        ModuleDiscovery discovery = new ModuleDiscovery(folders::matches, this.gitIgnore);
+        List<Path> paths;
+        if (this.sortModules) {
+            try (Stream<Path> modules = discovery.stream(sourcePaths, true)) {
+                paths = modules.collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            paths = discovery.discover(sourcePaths);
+        }
+
+        this.modulePaths = this.filterModulesToIgnore(paths, folders);
+    }
+
+    /**
+     * Get the modules under the source paths which have changed since the base revision,
+     * checked against the same filters as the modules found by walking the source paths.
+     */
+    private void loadChangedSourceModules(List<Path> sourcePaths) throws IOException {
+        // the files changed in every repository the source paths belong to
+        Set<Path> repositories = new LinkedHashSet<>();
+        for (Path sourcePath : sourcePaths) {
+            if (Files.exists(sourcePath)) {
+                Path directory = Files.isDirectory(sourcePath) ? sourcePath : sourcePath.toAbsolutePath().getParent();
+                repositories.add(GitChanges.repositoryRoot(directory));
+            }
+        }
+        List<Path> changedFiles = new ArrayList<>();
+        for (Path repository : repositories) {
+            changedFiles.addAll(GitChanges.changedFiles(repository, this.changedSinceRef));
+        }
 
-        this.modulePaths = this.filterModulesToIgnore(fileModulePaths);
+        GlobMatcher folders = new GlobMatcher(this.foldersToIgnore);
+        List<Path> paths = new ModuleDiscovery(folders::matches, this.gitIgnore).select(sourcePaths, changedFiles);
+        this.modulePaths = this.filterModulesToIgnore(paths, folders);
+        this.logger.info(MessageFormat.format("{0} of {1} files changed since {2} are modules to process",
+                this.modulePaths.size(), changedFiles.size(), this.changedSinceRef));
+    }
+
+    /**
+     * Get the paths of the modules to process. The streamed modules are found and filtered while they are taken,
+     * a failure to read a directory is thrown as {@link UncheckedIOException}. The stream has to be closed,
+     * which stops the walk if the modules are not taken to the end.
+     */
+    public Stream<String> modules() {
+        if (!this.streamModules || this.changedSinceRef != null) {
+            return this.modulePaths.stream();
+        }
+        GlobMatcher folders = new GlobMatcher(this.foldersToIgnore);
+        GlobMatcher moduleNames = new GlobMatcher(this.moduleNameGlobs());
+        return new ModuleDiscovery(folders::matches, this.gitIgnore).stream(this.sourcePaths, this.sortModules)
+                .filter(path -> isModuleToProcess(this.relativeToSourcePath(path), folders::matches, moduleNames))
+                .map(Path::toString);
+    }
+
+    /**
+     * Get the patterns of the module names to ignore as globs. A name without wildcards and separators
+     * is matched within a name of the path, the globs are matched as they are.
+     */
+    private List<String> moduleNameGlobs() {
+        List<String> globs = new ArrayList<>();
+        for (String pattern : this.moduleNamePatternsToIgnore) {
+            if (pattern.isEmpty() || pattern.matches(".*[*?\\[/].*")) {
+                globs.add(pattern);
+            } else {
+                globs.add("*" + pattern + "*");
+            }
+        }
+        return globs;
     }
 
     /**
@@ -152,28 +342,47 @@ public class PyWriterConfig {
      * - matching ignore pattern in filename
      */
     public ArrayList<String> filterModulesToIgnore(List<Path> paths) {
-        List<Path> pathsRequired = new ArrayList<>();
+        return this.filterModulesToIgnore(paths, new GlobMatcher(this.foldersToIgnore));
+    }
+
+    private ArrayList<String> filterModulesToIgnore(List<Path> paths, GlobMatcher folders) {
+        GlobMatcher moduleNames = new GlobMatcher(this.moduleNameGlobs());
+        // the modules of a directory share its verdict
+        Map<Path, Boolean> ignoredFolders = new HashMap<>();
+
+        ArrayList<String> pathsFiltered = new ArrayList<>();
         for (Path path : paths) {
-            if (this.foldersToIgnore.stream().noneMatch(path.getParent().toString()::contains)) {
-                pathsRequired.add(path);
+            if (isModuleToProcess(this.relativeToSourcePath(path),
+                    parent -> ignoredFolders.computeIfAbsent(parent, folders::matches), moduleNames)) {
+                pathsFiltered.add(path.toString());
             }
         }
+        return pathsFiltered;
+    }
 
-        ArrayList<String> pathsFiltered = new ArrayList<>();
-        for (Path path : pathsRequired) {
-            String fileName = FilesUtils
-                    .getFilenameWithoutExt(new File(path.toString()).getName());
-            if (isBusinessModule(fileName)) {
-                if (this.moduleNamePatternsToIgnore.size() > 0) {
-                    if (this.moduleNamePatternsToIgnore.stream().noneMatch(path.toString()::contains)) {
-                        pathsFiltered.add(path.toString());
-                    }
-                } else {
-                    pathsFiltered.add(path.toString());
-                }
+    /**
+     * Get the path of a module relative to the source path it has been found under, which the patterns
+     * to ignore are matched against, so they never match the directories above the source path.
+     * A module given as a source path is matched by its name.
+     */
+    private Path relativeToSourcePath(Path path) {
+        for (Path sourcePath : this.sourcePaths) {
+            if (path.equals(sourcePath)) {
+                return path.getFileName();
+            } else if (path.startsWith(sourcePath)) {
+                return sourcePath.relativize(path);
             }
         }
-        return pathsFiltered;
+        return path;
+    }
+
+    private static boolean isModuleToProcess(Path path, Predicate<Path> ignoredFolder, GlobMatcher moduleNames) {
+        Path parent = path.getParent();
+        if (parent != null && ignoredFolder.test(parent)) {
+            return false;
+        }
+        String fileName = FilesUtils.getFilenameWithoutExt(path.getFileName().toString());
+        return isBusinessModule(fileName) && !moduleNames.matches(path);
     }
 
     /**
@@ -336,4 +545,314 @@ public class PyWriterConfig {
                     .get(testSuiteHaveTearDown);
         }
     }
+
+    /**
+     * Get number of modules to process in parallel (1 means sequential processing).
+     */
+    public void loadParallelism(String parallelism) {
+        this.parallelism = this.parsePositiveInt(parallelism, PyWriterConfig.parallelismDefault,
+                "parallelism");
+    }
+
+    /**
+     * Get whether modules should be processed by the staged read/parse/render/write pipeline.
+     */
+    public void loadPipeline(String pipeline) {
+        if (pipeline.isEmpty()) {
+            this.pipeline = PyWriterConfig.pipelineDefault;
+        } else {
+            this.pipeline = PyWriterConfig.pipelineMapping.getOrDefault(pipeline,
+                    PyWriterConfig.pipelineDefault);
+        }
+    }
+
+    /**
+     * Get capacity of the queues joining the pipeline stages.
+     */
+    public void loadPipelineQueueCapacity(String capacity) {
+        this.pipelineQueueCapacity = this.parsePositiveInt(capacity,
+                PyWriterConfig.pipelineQueueCapacityDefault, "pipeline queue capacity");
+    }
+
+    /**
+     * Get number of threads reading the source modules in the pipeline.
+     */
+    public void loadPipelineReadThreads(String threads) {
+        this.pipelineReadThreads = this.parsePositiveInt(threads,
+                PyWriterConfig.pipelineReadThreadsDefault, "number of read threads");
+    }
+
+    /**
+     * Get number of threads parsing the source modules in the pipeline.
+     */
+    public void loadPipelineParseThreads(String threads) {
+        this.pipelineParseThreads = this.parsePositiveInt(threads,
+                PyWriterConfig.pipelineParseThreadsDefault, "number of parse threads");
+    }
+
+    /**
+     * Get number of threads rendering the test modules in the pipeline.
+     */
+    public void loadPipelineRenderThreads(String threads) {
+        this.pipelineRenderThreads = this.parsePositiveInt(threads,
+                PyWriterConfig.pipelineRenderThreadsDefault, "number of render threads");
+    }
+
+    /**
+     * Get number of threads writing the test modules in the pipeline.
+     */
+    public void loadPipelineWriteThreads(String threads) {
+        this.pipelineWriteThreads = this.parsePositiveInt(threads,
+                PyWriterConfig.pipelineWriteThreadsDefault, "number of write threads");
+    }
+
+    /**
+     * Get prediction mode used for parsing: full LL only or SLL with fallback to LL.
+     */
+    public void loadParseMode(String parseMode) {
+        if (parseMode.equals(ABBREV_PARSE_MODE_LL)) {
+            this.parseMode = ParseMode.LL;
+        } else if (parseMode.equals(ABBREV_PARSE_MODE_SLL)) {
+            this.parseMode = ParseMode.SLL_LL;
+        } else {
+            this.parseMode = PyWriterConfig.parseModeDefault;
+        }
+    }
+
+    /**
+     * Get size limit (in megabytes) of the parser DFA cache; zero means the cache is unbounded.
+     */
+    public void loadDfaCacheMaxSize(String megabytes) {
+        if (megabytes.isEmpty()) {
+            this.dfaCacheMaxBytes = PyWriterConfig.dfaCacheMaxBytesDefault;
+        } else {
+            try {
+                this.dfaCacheMaxBytes = Math.max(0, Long.parseLong(megabytes)) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                this.logger.info(MessageFormat.format(
+                        "Invalid DFA cache size provided. Will use the default, {0} MB.",
+                        PyWriterConfig.dfaCacheMaxBytesDefault / 1024 / 1024));
+                this.dfaCacheMaxBytes = PyWriterConfig.dfaCacheMaxBytesDefault;
+            }
+        }
+    }
+
+    /**
+     * Get engine extracting the functions: the parse tree, the lexer-only outline
+     * or the parse listener that does not build the tree.
+     */
+    public void loadExtractionEngine(String extractionEngine) {
+        if (extractionEngine.equals(ABBREV_EXTRACTION_ENGINE_TREE)) {
+            this.extractionEngine = ExtractionEngine.PARSE_TREE;
+        } else if (extractionEngine.equals(ABBREV_EXTRACTION_ENGINE_LEXER)) {
+            this.extractionEngine = ExtractionEngine.LEXER_OUTLINE;
+        } else if (extractionEngine.equals(ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            this.extractionEngine = ExtractionEngine.STREAMING;
+        } else {
+            this.extractionEngine = PyWriterConfig.extractionEngineDefault;
+        }
+    }
+
+    /**
+     * Get whether the parser should recover from syntax errors and collect them
+     * instead of giving up on the module at the first error.
+     */
+    public void loadRecoverFromErrors(String recover) {
+        if (recover.isEmpty()) {
+            this.recoverFromErrors = PyWriterConfig.recoverFromErrorsDefault;
+        } else {
+            this.recoverFromErrors = PyWriterConfig.recoverFromErrorsMapping.getOrDefault(recover,
+                    PyWriterConfig.recoverFromErrorsDefault);
+        }
+    }
+
+    /**
+     * Get size (in kilobytes) from which a module is split into chunks parsed in parallel;
+     * zero means modules are never split.
+     */
+    public void loadChunkThreshold(String kilobytes) {
+        if (kilobytes.isEmpty()) {
+            this.chunkThresholdChars = PyWriterConfig.chunkThresholdCharsDefault;
+        } else {
+            try {
+                this.chunkThresholdChars = Math.max(0, Math.min(Integer.parseInt(kilobytes),
+                        Integer.MAX_VALUE / 1024)) * 1024;
+            } catch (NumberFormatException e) {
+                this.logger.info("Invalid chunk threshold provided. Modules will not be split.");
+                this.chunkThresholdChars = PyWriterConfig.chunkThresholdCharsDefault;
+            }
+        }
+    }
+
+    /**
+     * Get whether every thread should reuse its lexer and parser for all modules it processes.
+     */
+    public void loadReuseParsers(String reuse) {
+        if (reuse.isEmpty()) {
+            this.reuseParsers = PyWriterConfig.reuseParsersDefault;
+        } else {
+            this.reuseParsers = PyWriterConfig.reuseParsersMapping.getOrDefault(reuse,
+                    PyWriterConfig.reuseParsersDefault);
+        }
+    }
+
+    /**
+     * Get whether the tokens of a module should be kept in arrays instead of token objects.
+     */
+    public void loadCompactTokens(String compact) {
+        if (compact.isEmpty()) {
+            this.compactTokens = PyWriterConfig.compactTokensDefault;
+        } else {
+            this.compactTokens = PyWriterConfig.compactTokensMapping.getOrDefault(compact,
+                    PyWriterConfig.compactTokensDefault);
+        }
+    }
+
+    /**
+     * Get stack size of the threads parsing the modules.
+     */
+    public void loadParseStackSize(String megabytes) {
+        this.parseStackBytes = this.parsePositiveInt(megabytes, PyWriterConfig.parseStackMegabytesDefault,
+                "parse stack size") * 1024L * 1024;
+    }
+
+    /**
+     * Get time budget for parsing a single module.
+     */
+    public void loadParseTimeout(String milliseconds) {
+        if (milliseconds.isEmpty()) {
+            this.parseTimeoutMillis = PyWriterConfig.parseTimeoutMillisDefault;
+        } else {
+            try {
+                this.parseTimeoutMillis = Math.max(0, Long.parseLong(milliseconds));
+            } catch (NumberFormatException e) {
+                this.logger.info("Invalid parse timeout provided. Parsing of modules will not be limited.");
+                this.parseTimeoutMillis = PyWriterConfig.parseTimeoutMillisDefault;
+            }
+        }
+    }
+
+    /**
+     * Get whether the modules that cannot produce tests should be skipped before parsing.
+     */
+    public void loadPrefilter(String prefilter) {
+        if (prefilter.isEmpty()) {
+            this.prefilter = PyWriterConfig.prefilterDefault;
+        } else {
+            this.prefilter = PyWriterConfig.prefilterMapping.getOrDefault(prefilter,
+                    PyWriterConfig.prefilterDefault);
+        }
+    }
+
+    /**
+     * Get markers in the header of a module that make it a generated module which is skipped.
+     */
+    public void loadGeneratedMarkers(String markers) {
+        if (markers.isEmpty()) {
+            this.generatedMarkers = PyWriterConfig.generatedMarkersDefault;
+        } else {
+            this.generatedMarkers = Arrays.asList(markers.split(";", -1));
+        }
+    }
+
+    /**
+     * Get size of the largest module that is parsed, larger modules are skipped.
+     */
+    public void loadMaxModuleSize(String kilobytes) {
+        if (kilobytes.isEmpty()) {
+            this.maxModuleBytes = PyWriterConfig.maxModuleBytesDefault;
+        } else {
+            try {
+                this.maxModuleBytes = Math.max(0, Long.parseLong(kilobytes)) * 1024;
+            } catch (NumberFormatException e) {
+                this.logger.info("Invalid maximum module size provided. Modules will not be skipped by size.");
+                this.maxModuleBytes = PyWriterConfig.maxModuleBytesDefault;
+            }
+        }
+    }
+
+    /**
+     * Get path of the file to write the profile of the parser decisions to, which turns the profiling on.
+     */
+    public void loadProfileReport(String path) {
+        if (path.isEmpty()) {
+            this.profileReportPath = PyWriterConfig.profileReportPathDefault;
+        } else {
+            this.profileReportPath = path;
+        }
+    }
+
+    /**
+     * Get the file the DFA of the parser is restored from at the start and saved to at the end of the run.
+     */
+    public void loadDfaSnapshot(String path) {
+        if (path.isEmpty()) {
+            this.dfaSnapshotPath = PyWriterConfig.dfaSnapshotPathDefault;
+        } else {
+            this.dfaSnapshotPath = path;
+        }
+    }
+
+    /**
+     * Get whether the modules git ignores in the repository of the source paths should be left out.
+     */
+    public void loadGitIgnore(String gitIgnore) {
+        if (gitIgnore.isEmpty()) {
+            this.gitIgnore = PyWriterConfig.gitIgnoreDefault;
+        } else {
+            this.gitIgnore = PyWriterConfig.gitIgnoreMapping.getOrDefault(gitIgnore,
+                    PyWriterConfig.gitIgnoreDefault);
+        }
+    }
+
+    /**
+     * Get whether the modules should be processed while the source paths are still being walked.
+     */
+    public void loadStreamModules(String stream) {
+        if (stream.isEmpty()) {
+            this.streamModules = PyWriterConfig.streamModulesDefault;
+        } else {
+            this.streamModules = PyWriterConfig.streamModulesMapping.getOrDefault(stream,
+                    PyWriterConfig.streamModulesDefault);
+        }
+    }
+
+    /**
+     * Get whether the modules should be found in the order of their names, the same in every run.
+     */
+    public void loadSortModules(String sort) {
+        if (sort.isEmpty()) {
+            this.sortModules = PyWriterConfig.sortModulesDefault;
+        } else {
+            this.sortModules = PyWriterConfig.sortModulesMapping.getOrDefault(sort,
+                    PyWriterConfig.sortModulesDefault);
+        }
+    }
+
+    /**
+     * Get the base revision of the changes the modules are processed for, which turns the incremental mode on.
+     */
+    public void loadChangedSince(String ref) {
+        if (ref.isEmpty()) {
+            this.changedSinceRef = PyWriterConfig.changedSinceRefDefault;
+        } else {
+            this.changedSinceRef = ref;
+        }
+    }
+
+    /**
+     * Parse a positive number falling back to the default if the value is missing or invalid.
+     */
+    private int parsePositiveInt(String value, int defaultValue, String description) {
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            this.logger.info(MessageFormat.format(
+                    "Invalid {0} provided. Will use the default, {1}.", description, defaultValue));
+            return defaultValue;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.scaffold.console;
 
 import com.scaffold.util.FilesUtils;
+import com.scaffold.writer.PyWriterConfig;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -9,9 +10,19 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ITRunnerTest {
 
@@ -46,4 +57,68 @@ public class ITRunnerTest {
         assertEquals(actualStrings, expectedStrings);
         FilesUtils.deleteFolder(new File("src/test/resources/runner/tests"));
     }
+
+    @Test
+    public void takeModulesOnlyAsFastAsTheyAreProcessed() throws Exception {
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger ahead = new AtomicInteger();
+        // the modules a streamed walk would hand over, while the walk is at most its capacity ahead of them
+        Iterable<String> modules = () -> IntStream.range(0, 200).mapToObj(String::valueOf)
+                .peek(module -> ahead.accumulateAndGet(taken.incrementAndGet() - processed.get(), Math::max))
+                .iterator();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Runner.executeBounded(modules, executor, 2 * Runner.PENDING_MODULES_PER_THREAD, module -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.incrementAndGet();
+            });
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(200, processed.get());
+        assertTrue(String.valueOf(ahead.get()), ahead.get() <= 2 * Runner.PENDING_MODULES_PER_THREAD);
+    }
+
+    @Test
+    public void stopThePipelineWhenTheModulesFailToBeListed() throws Exception {
+        GenerationPipeline pipeline = new GenerationPipeline(new PyWriterConfig(), Logger.getAnonymousLogger());
+        Iterable<String> modules = () -> new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                throw new IllegalStateException("The folder cannot be listed");
+            }
+        };
+        try {
+            pipeline.run(modules);
+            fail("The failure of the module paths is not passed on");
+        } catch (IllegalStateException e) {
+            assertEquals("The folder cannot be listed", e.getMessage());
+        }
+
+        Thread stages = new Thread(() -> {
+            try {
+                for (GenerationPipeline.Stage<?, ?> stage : pipeline.stages) {
+                    stage.awaitTermination();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stages.setDaemon(true);
+        stages.start();
+        stages.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(stages.isAlive());
+    }
 }
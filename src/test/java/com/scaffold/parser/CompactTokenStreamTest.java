@@ -0,0 +1,74 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompactTokenStreamTest {
+
+    private static final String SOURCE = "class A:\n    @property\n    def f(self, x=(1,\n 2)):\n"
+            + "        return 'ab' + \"c\"\n\nasync def g():\n    pass\n";
+
+    private static Python3Lexer lexer() {
+        return new Builder.Lexer(CharStreams.fromString(SOURCE, "module.py")).build();
+    }
+
+    private static void assertSameToken(Token expected, Token actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getStartIndex(), actual.getStartIndex());
+        assertEquals(expected.getStopIndex(), actual.getStopIndex());
+        assertEquals(expected.getLine(), actual.getLine());
+        assertEquals(expected.getCharPositionInLine(), actual.getCharPositionInLine());
+        assertEquals(expected.getChannel(), actual.getChannel());
+        assertEquals(expected.getTokenIndex(), actual.getTokenIndex());
+    }
+
+    @Test
+    public void sameTokensAsCommonTokenStream() {
+        TokenStream expected = new CommonTokenStream(lexer());
+        TokenStream actual = new CompactTokenStream(lexer());
+        while (true) {
+            assertEquals(expected.index(), actual.index());
+            for (int k : new int[]{-2, -1, 1, 2, 3}) {
+                assertSameToken(expected.LT(k), actual.LT(k));
+                if (expected.LT(k) != null) {
+                    assertEquals(expected.LA(k), actual.LA(k));
+                }
+            }
+            if (expected.LA(1) == Token.EOF) {
+                break;
+            }
+            expected.consume();
+            actual.consume();
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getText(Interval.of(3, 9)), actual.getText(Interval.of(3, 9)));
+        assertEquals("module.py", actual.getSourceName());
+
+        actual.seek(4);
+        expected.seek(4);
+        assertSameToken(expected.LT(1), actual.LT(1));
+    }
+
+    @Test
+    public void recentTokensAreNotCreatedAgain() {
+        TokenStream tokens = new CompactTokenStream(lexer());
+        Token first = tokens.LT(1);
+        tokens.consume();
+        assertSame(first, tokens.LT(-1));
+        assertSame(tokens.LT(1), tokens.get(1));
+    }
+}
@@ -0,0 +1,96 @@
+package com.scaffold.parser;
+
+import com.scaffold.writer.PyWriterConfig;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DfaSnapshotTest {
+
+    private static final String SOURCE = "import os\n"
+            + "@decorator(x=1)\n"
+            + "def first(a, *args, b=-1 ** 2, **kwargs):\n"
+            + "    return [i for i in range(a) if not i % 2 and a or b]\n"
+            + "class Outer(object):\n"
+            + "    async def method(self, x: int) -> bool:\n"
+            + "        await self.other(x << 1 | 3)\n"
+            + "        return x is not None and x not in {1: 2}\n"
+            + "    def other(self, *, y=lambda z: z[1:2]):\n"
+            + "        yield from y(-self.x ** 2 @ m)\n";
+
+    private static List<String> extractFunctions() {
+        SourceParser parser = new SourceParser("snapshot.py", SOURCE, new PyWriterConfig());
+        parser.loadFunctions();
+        return parser.pyModule.functions.stream().map(Object::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    public void restoreSnapshotOfWarmDfa() throws Exception {
+        Path snapshot = Files.createTempFile("dfa", ".snapshot");
+        try {
+            List<String> functions = extractFunctions();
+            int saved = DfaSnapshot.save(snapshot);
+            assertEquals(DfaCache.statistics().parserStates(), saved);
+
+            DfaCache.clear();
+            assertEquals(0, DfaCache.statistics().parserStates());
+            assertEquals(saved, DfaSnapshot.restore(snapshot));
+            assertEquals(saved, DfaCache.statistics().parserStates());
+
+            // the restored states are found again instead of being predicted anew
+            assertEquals(functions, extractFunctions());
+            assertEquals(saved, DfaCache.statistics().parserStates());
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void discardSnapshotOfAnotherGrammar() throws Exception {
+        Path snapshot = Files.createTempFile("dfa", ".snapshot");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(snapshot)))) {
+            out.writeInt(DfaSnapshot.MAGIC);
+            out.writeInt(DfaSnapshot.VERSION);
+            out.writeLong(DfaSnapshot.checksum() + 1);
+        }
+        try {
+            extractFunctions();
+            int states = DfaCache.statistics().parserStates();
+            assertEquals(-1, DfaSnapshot.restore(snapshot));
+            assertEquals(states, DfaCache.statistics().parserStates());
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void failOnTruncatedSnapshot() throws Exception {
+        Path snapshot = Files.createTempFile("dfa", ".snapshot");
+        try {
+            extractFunctions();
+            DfaSnapshot.save(snapshot);
+            byte[] bytes = Files.readAllBytes(snapshot);
+            Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+            int states = DfaCache.statistics().parserStates();
+            try {
+                DfaSnapshot.restore(snapshot);
+                throw new AssertionError("the truncated snapshot has been restored");
+            } catch (IOException e) {
+                assertEquals(states, DfaCache.statistics().parserStates());
+            }
+        } finally {
+            Files.delete(snapshot);
+        }
+        assertTrue(extractFunctions().size() > 0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Number of rule contexts the grammar builds for the given source modules (the test resources by default)
+ * and the parse throughput, with SLL prediction falling back to LL the way the modules are parsed.
+ * Run with `java -Xss64m -cp <test classpath> com.scaffold.parser.GrammarBenchmark [module.py ...]`;
+ * the modules that do not parse are left out.
+ */
+public class GrammarBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Iterable<String> modules = args.length > 0 ? Arrays.asList(args)
+                : ITSourceParserTest.validSourceModules();
+        List<String> sources = new ArrayList<>();
+        long chars = 0;
+        long contexts = 0;
+        for (String module : modules) {
+            String source = Files.readString(Paths.get(module));
+            if (!source.endsWith("\n")) {
+                source += "\n";
+            }
+            try {
+                contexts += countContexts(parse(source));
+            } catch (RuntimeException e) {
+                continue;
+            }
+            sources.add(source);
+            chars += source.length();
+        }
+        System.out.printf("%d modules, %d KB, %d rule contexts%n", sources.size(), chars / 1024, contexts);
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String source : sources) {
+                parse(source);
+            }
+            long nanos = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("parsed in %.1f ms, %.2f MB/s%n", nanos / 1e6, chars * 1e3 / nanos);
+            }
+        }
+    }
+
+    private static ParseTree parse(String source) {
+        Python3Parser parser = new Builder.Parser(source).build();
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            return parser.file_input();
+        } catch (RuntimeException e) {
+            return new Builder.Parser(source).build().file_input();
+        }
+    }
+
+    private static long countContexts(ParseTree tree) {
+        long contexts = tree instanceof ParserRuleContext ? 1 : 0;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            contexts += countContexts(tree.getChild(i));
+        }
+        return contexts;
+    }
+}
@@ -2,7 +2,12 @@ package com.scaffold.parser;
 
 import com.scaffold.console.Runner;
 import com.scaffold.util.FilesUtils;
+import com.scaffold.writer.PyFunction;
+import com.scaffold.writer.PyWriterConfig;
 import junit.framework.Assert;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
 import org.junit.Test;
 
 import java.io.File;
@@ -13,16 +18,40 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 import static com.scaffold.console.Definitions.*;
 import static com.scaffold.writer.PyModule.pythonModuleExtension;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ITSourceParserTest {
 
+    private static final String NESTED_DEFINITIONS = "import os\n"
+            + "@decorator\n"
+            + "def first(a,\n"
+            + "          b):\n"
+            + "    def nested(): pass\n"
+            + "    return 'def fake(): pass'\n"
+            + "class Outer(object):\n"
+            + "    x = 1\n"
+            + "    async def method(self):\n"
+            + "        async for i in range(3):\n"
+            + "            pass\n"
+            + "    class Inner:\n"
+            + "        def inner(self): pass\n"
+            + "    def other(self):\n"
+            + "        pass\n"
+            + "def last(): return 1\n";
+    private static final List<String> NESTED_DEFINITIONS_FUNCTIONS = Arrays.asList(
+            "..first", "..nested", "Outer.method", "Inner.inner", "Outer.other", "..last");
+
     @Test
     public void getClassMethods() throws Exception {
         SourceParser parser = new SourceParser("src/test/resources/get_class_methods.py");
@@ -37,6 +66,495 @@ public class ITSourceParserTest {
         parser.loadFunctions();
     }
 
+    @Test
+    public void parseWithSllPredictionSameAsLl() throws Exception {
+        PyWriterConfig llConfig = new PyWriterConfig();
+        llConfig.loadParseMode(ABBREV_PARSE_MODE_LL);
+        PyWriterConfig sllConfig = new PyWriterConfig();
+        sllConfig.loadParseMode(ABBREV_PARSE_MODE_SLL);
+
+        for (String module : validSourceModules()) {
+            assertEquals(module, extractFunctions(module, llConfig), extractFunctions(module, sllConfig));
+        }
+    }
+
+    @Test
+    public void extractWithLexerOutlineSameAsParseTree() throws Exception {
+        PyWriterConfig treeConfig = new PyWriterConfig();
+        treeConfig.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_TREE);
+        PyWriterConfig lexerConfig = new PyWriterConfig();
+        lexerConfig.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_LEXER);
+
+        // the lexer does not validate the syntax, so it finds the functions of the modules the parser rejects:
+        // one with an error after a definition header and one without a newline after the last statement
+        Map<String, String> lexerOnlyFunctions = new HashMap<>();
+        lexerOnlyFunctions.put(Paths.get("src/test/resources", "invalid_python.py").toString(), "[./bar, ./foo]");
+        lexerOnlyFunctions.put(Paths.get("src/test/resources/cases/ModulesWithNoFuncs", "empty.py").toString(), "[]");
+
+        List<String> modules = new ArrayList<>(validSourceModules());
+        modules.add(Paths.get("src/test/resources", "invalid_python.py").toString());
+        for (String module : modules) {
+            String expected = extractFunctions(module, treeConfig);
+            if (lexerOnlyFunctions.containsKey(module)) {
+                assertEquals(module, "error", expected);
+                expected = lexerOnlyFunctions.get(module);
+            } else {
+                assertFalse(module, expected.equals("error"));
+            }
+            assertEquals(module, expected, extractFunctions(module, lexerConfig));
+        }
+
+        // the malformed definitions make the lexer-only extraction fall back to the parser
+        for (String source : Arrays.asList("def f(:\n    pass\n", "def f() pass\n", "def f:\n    pass\n",
+                "class A\n    def f(self): pass\n", "class A(B]:\n    pass\n", "def f(x=(1):\n    pass\n")) {
+            SourceParser parser = new SourceParser("invalid.py", source, lexerConfig);
+            try {
+                parser.loadFunctions();
+                fail(source);
+            } catch (RuntimeException e) {
+                assertTrue(parser.pyModule.functions.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void parseComparisonsOfExpressionsOnly() {
+        for (String source : Arrays.asList("x = not a < b < c and d in e or not f is not g\n",
+                "x = a if not b == c else d\n", "x = [a for a in b if a not in c]\n")) {
+            new SourceParser("valid.py", source, new PyWriterConfig()).loadFunctions();
+        }
+        for (String source : Arrays.asList("x = a < not b\n", "x = a == not b\n", "x = a in not b\n")) {
+            try {
+                new SourceParser("invalid.py", source, new PyWriterConfig()).loadFunctions();
+                fail(source);
+            } catch (RuntimeException e) {
+                // the operand of a comparison cannot be a boolean test
+            }
+        }
+    }
+
+    @Test
+    public void extractWhileParsingSameAsParseTree() throws Exception {
+        PyWriterConfig treeConfig = new PyWriterConfig();
+        treeConfig.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_TREE);
+        PyWriterConfig streamConfig = new PyWriterConfig();
+        streamConfig.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_STREAM);
+
+        for (String module : validSourceModules()) {
+            assertEquals(module, extractFunctions(module, treeConfig), extractFunctions(module, streamConfig));
+        }
+    }
+
+    @Test
+    public void extractFromParseTreeWithScopes() {
+        SourceParser parser = new SourceParser("nested.py", NESTED_DEFINITIONS, new PyWriterConfig());
+        parser.loadFunctions();
+        assertEquals(NESTED_DEFINITIONS_FUNCTIONS, parser.pyModule.functions.stream()
+                .map(function -> function.parent + "." + function.name)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void extractInChunksSameAsWhole() throws Exception {
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            PyWriterConfig wholeConfig = new PyWriterConfig();
+            wholeConfig.loadExtractionEngine(engine);
+            PyWriterConfig chunkedConfig = new PyWriterConfig();
+            chunkedConfig.loadExtractionEngine(engine);
+            // every top-level definition starts a new chunk
+            chunkedConfig.chunkThresholdChars = 1;
+
+            long chunks = SourceParser.parsedChunks.get();
+            for (String module : validSourceModules()) {
+                assertEquals(module, extractFunctions(module, wholeConfig), extractFunctions(module, chunkedConfig));
+            }
+            assertTrue(SourceParser.parsedChunks.get() > chunks);
+        }
+    }
+
+    @Test
+    public void extractDeepChunksSameAsWhole() throws Exception {
+        StringBuilder source = new StringBuilder("def first():\n    pass\n\nclass Data:\n    def load(self):\n"
+                + "        return ");
+        for (int i = 0; i < 4000; i++) {
+            source.append('[');
+        }
+        for (int i = 0; i < 4000; i++) {
+            source.append(']');
+        }
+        source.append("\n\ndef dump(data):\n    pass\n");
+
+        // the chunks are parsed with the stack the whole module is parsed with
+        PyWriterConfig chunkedConfig = new PyWriterConfig();
+        chunkedConfig.chunkThresholdChars = 1;
+        long overflowed = SourceParser.overflowedModules.get();
+        assertEquals("[./first, Data/load, ./dump]",
+                extractOnThread(source.toString(), chunkedConfig, chunkedConfig.parseStackBytes));
+        assertEquals(overflowed, SourceParser.overflowedModules.get());
+    }
+
+    @Test
+    public void extractWithReusedParsersSameAsNew() throws Exception {
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            PyWriterConfig newConfig = new PyWriterConfig();
+            newConfig.loadExtractionEngine(engine);
+            PyWriterConfig reuseConfig = new PyWriterConfig();
+            reuseConfig.loadExtractionEngine(engine);
+            reuseConfig.loadReuseParsers(ABBREV_YES);
+
+            for (String module : validSourceModules()) {
+                // a failed parse leaves the lexer in the middle of the module
+                assertEquals("error", extractFunctions("src/test/resources/invalid_python.py", reuseConfig));
+                assertEquals(module, extractFunctions(module, newConfig), extractFunctions(module, reuseConfig));
+            }
+        }
+    }
+
+    @Test
+    public void extractWithCompactTokensSameAsCommon() throws Exception {
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            for (String reuse : Arrays.asList(ABBREV_NO, ABBREV_YES)) {
+                PyWriterConfig commonConfig = new PyWriterConfig();
+                commonConfig.loadExtractionEngine(engine);
+                PyWriterConfig compactConfig = new PyWriterConfig();
+                compactConfig.loadExtractionEngine(engine);
+                compactConfig.loadReuseParsers(reuse);
+                compactConfig.loadCompactTokens(ABBREV_YES);
+
+                for (String module : validSourceModules()) {
+                    assertEquals(module, extractFunctions(module, commonConfig),
+                            extractFunctions(module, compactConfig));
+                }
+                assertEquals("error", extractFunctions("src/test/resources/invalid_python.py", compactConfig));
+            }
+        }
+    }
+
+    @Test
+    public void extractFromModuleTooDeepForStack() throws Exception {
+        StringBuilder source = new StringBuilder("class Data:\n    def load(self):\n        return ");
+        for (int i = 0; i < 2000; i++) {
+            source.append('[');
+        }
+        for (int i = 0; i < 2000; i++) {
+            source.append(']');
+        }
+        source.append("\n\ndef dump(data):\n    pass\n");
+        String expected = "[Data/load, ./dump]";
+
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            PyWriterConfig config = new PyWriterConfig();
+            config.loadExtractionEngine(engine);
+            long overflowed = SourceParser.overflowedModules.get();
+            assertEquals(expected, extractOnThread(source.toString(), config, 256 * 1024));
+            assertEquals(overflowed + 1, SourceParser.overflowedModules.get());
+            assertEquals(expected, extractOnThread(source.toString(), config, config.parseStackBytes));
+            assertEquals(overflowed + 1, SourceParser.overflowedModules.get());
+        }
+    }
+
+    @Test
+    public void extractFromModuleOutOfTime() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            source.append("def f").append(i).append("(a, b=1):\n    return [a * b for _ in range(a)]\n");
+        }
+        // only the slowest modules since the last report are kept
+        ParseTimings.report();
+        PyWriterConfig unlimitedConfig = new PyWriterConfig();
+        unlimitedConfig.loadReuseParsers(ABBREV_YES);
+        SourceParser unlimited = new SourceParser("timeout.py", source.toString(), unlimitedConfig);
+        unlimited.loadFunctions();
+
+        PyWriterConfig config = new PyWriterConfig();
+        config.loadReuseParsers(ABBREV_YES);
+        config.loadParseTimeout("1");
+        long timedOut = SourceParser.timedOutModules.get();
+        SourceParser parser = new SourceParser("timeout.py", source.toString(), config);
+        parser.loadFunctions();
+        assertEquals(timedOut + 1, SourceParser.timedOutModules.get());
+        assertEquals(unlimited.pyModule.functions.toString(), parser.pyModule.functions.toString());
+
+        // the reused parser does not keep the deadline
+        new SourceParser("timeout.py", source.toString(), unlimitedConfig).loadFunctions();
+        assertEquals(timedOut + 1, SourceParser.timedOutModules.get());
+        assertTrue(ParseTimings.report().contains(System.lineSeparator() + "  timeout.py: "));
+    }
+
+    @Test
+    public void profileDecisionsOfParsedModules() throws Exception {
+        ParserProfile.report();
+        for (String reuse : Arrays.asList(ABBREV_NO, ABBREV_YES)) {
+            PyWriterConfig config = new PyWriterConfig();
+            config.loadReuseParsers(reuse);
+            PyWriterConfig profileConfig = new PyWriterConfig();
+            profileConfig.loadReuseParsers(reuse);
+            profileConfig.loadProfileReport("profile.txt");
+            for (String module : validSourceModules()) {
+                assertEquals(module, extractFunctions(module, config), extractFunctions(module, profileConfig));
+            }
+        }
+
+        String report = ParserProfile.report();
+        assertTrue(report, report.startsWith(MessageFormat.format("Profile of {0} parses: ",
+                validSourceModules().size() * 2)));
+        assertTrue(report, report.contains(System.lineSeparator() + "Decisions by prediction time:"
+                + System.lineSeparator() + "  decision "));
+        // only the decisions which are not LL(1) go through the prediction
+        assertTrue(report, report.matches("(?s).*  decision \\d+ \\(\\w+\\): [\\d,]+ invocations, .*"));
+        assertEquals(null, ParserProfile.report());
+    }
+
+    private static String extractOnThread(String source, PyWriterConfig config, long stackBytes)
+            throws InterruptedException {
+        List<PyFunction> functions = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            SourceParser parser = new SourceParser("deep.py", source, config);
+            parser.loadFunctions();
+            functions.addAll(parser.pyModule.functions);
+        }, "deep", stackBytes);
+        thread.start();
+        thread.join();
+        return functions.toString();
+    }
+
+    @Test
+    public void reusedLexerStartsFromScratch() {
+        Python3Lexer lexer = ParserPool.lexer(CharStreams.fromString("if x:\n    y = (1,\n"), null);
+        for (int i = 0; i < 8; i++) {
+            lexer.nextToken();
+        }
+        lexer = ParserPool.lexer(CharStreams.fromString("def f():\n    pass\n"), null);
+        List<String> types = new ArrayList<>();
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            types.add(Python3Parser.VOCABULARY.getSymbolicName(token.getType()));
+        }
+        assertEquals(Arrays.asList("DEF", "NAME", "OPEN_PAREN", "CLOSE_PAREN", "COLON", "NEWLINE", "INDENT",
+                "PASS", "NEWLINE", "DEDENT"), types);
+    }
+
+    @Test
+    public void lexIndentation() {
+        assertEquals(Arrays.asList("NEWLINE", "INDENT", "NAME", "NEWLINE", "DEDENT"), tokenTypes("  x\n"));
+        assertEquals(Arrays.asList("NEWLINE", "NAME", "NEWLINE"), tokenTypes("  # comment\nx\n"));
+        assertEquals(Arrays.asList("IF", "NAME", "COLON", "NEWLINE", "INDENT", "NAME", "NEWLINE", "NAME",
+                "NEWLINE", "DEDENT"), tokenTypes("if a:\n\tb\n        c\n"));
+        assertEquals(Arrays.asList("NAME", "ASSIGN", "OPEN_PAREN", "NUMBER", "COMMA", "NUMBER", "CLOSE_PAREN",
+                "NEWLINE", "NAME", "NEWLINE"), tokenTypes("x = (1,\n  2)\ny\n"));
+    }
+
+    private static List<String> tokenTypes(String source) {
+        Python3Lexer lexer = new Builder.Lexer(source).build();
+        List<String> types = new ArrayList<>();
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            types.add(Python3Parser.VOCABULARY.getSymbolicName(token.getType()));
+        }
+        return types;
+    }
+
+    @Test
+    public void splitModuleIntoChunks() {
+        String source = "import os\n"
+                + "@first_decorator\n"
+                + "@second_decorator(1)\n"
+                + "def first():\n"
+                + "    def nested(): pass\n"
+                + "x = [\n"
+                + "def_ for def_ in y]\n"
+                + "class Second:\n"
+                + "    pass\n"
+                + "async def third(): pass\n";
+        CommonTokenStream tokens = new CommonTokenStream(new Builder.Lexer(source).build());
+        tokens.fill();
+        List<String> chunks = ModuleChunker.split(tokens.getTokens(), 1).stream()
+                .map(chunk -> chunk.get(0).getText() + "@" + chunk.get(0).getLine())
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("import@1", "@@2", "class@8", "async@10"), chunks);
+        assertEquals(1, ModuleChunker.split(tokens.getTokens(), source.length()).size());
+    }
+
+    @Test
+    public void extractWithLexerOutline() {
+        List<String> functions = new ArrayList<>();
+        assertTrue(new OutlineExtractor(new Builder.Lexer(NESTED_DEFINITIONS).build())
+                .extract((parent, name, offset) -> functions.add(parent + "." + name)));
+        assertEquals(NESTED_DEFINITIONS_FUNCTIONS, functions);
+
+        // a block header without an indented block makes the extraction give up
+        assertFalse(new OutlineExtractor(new Builder.Lexer("def f():\nx = 1\n").build())
+                .extract((parent, name, offset) -> functions.add(name)));
+    }
+
+    @Test
+    public void readFunctionDetailsFromSource() {
+        String source = "class Service:\n"
+                + "    @staticmethod\n"
+                + "    @route('/a', methods=[GET, POST])\n"
+                + "    async def fetch(url: str, *args, timeout=(1, 2), **kwargs) -> Dict[str, int]:\n"
+                + "        r'''Fetch \\d \"the\" url'''\n"
+                + "        return url\n"
+                + "    def plain(self): pass\n"
+                + "def quoted():\n"
+                + "    'ends with a quote \"' \"and more\"; return 1\n"
+                + "def formatted():\n"
+                + "    \"not {}\".format(1)\n";
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM,
+                ABBREV_EXTRACTION_ENGINE_LEXER)) {
+            PyWriterConfig config = new PyWriterConfig();
+            config.loadExtractionEngine(engine);
+            SourceParser parser = new SourceParser("details.py", source, config);
+            parser.loadFunctions();
+            List<PyFunction> functions = parser.pyModule.functions;
+            assertEquals(engine, 4, functions.size());
+
+            PyFunction fetch = functions.get(0);
+            assertEquals(engine, source.indexOf("@staticmethod"), fetch.offset);
+            assertEquals(engine, Arrays.asList("staticmethod", "route('/a', methods=[GET, POST])"),
+                    fetch.getDecorators());
+            assertTrue(engine, fetch.isAsync());
+            assertEquals(engine, Arrays.asList("url: str", "*args", "timeout=(1, 2)", "**kwargs"),
+                    fetch.getParameters());
+            assertEquals(engine, "Fetch \\\\d \"the\" url", fetch.getDocstring());
+
+            PyFunction plain = functions.get(1);
+            assertEquals(engine, Arrays.asList("self"), plain.getParameters());
+            assertTrue(engine, plain.getDecorators().isEmpty());
+            assertFalse(engine, plain.isAsync());
+            assertEquals(engine, null, plain.getDocstring());
+
+            assertEquals(engine, "ends with a quote \"and more", functions.get(2).getDocstring());
+            assertEquals(engine, null, functions.get(3).getDocstring());
+        }
+        assertEquals("ends with \\\"\\\"\\\" and \\\"", FunctionDefinitionReader.docstring(Arrays.asList(
+                new Builder.Lexer("'ends with \"\"\" and \"'").build().nextToken())));
+    }
+
+    @Test
+    public void parseInvalidPythonFileRecovering() throws Exception {
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            PyWriterConfig config = new PyWriterConfig();
+            config.loadExtractionEngine(engine);
+            config.loadRecoverFromErrors(ABBREV_YES);
+            SourceParser parser = new SourceParser("src/test/resources/invalid_python.py", config);
+            parser.loadFunctions();
+            assertEquals(engine, "[./bar, ./foo]", parser.pyModule.functions.toString());
+            assertEquals(engine, 1, parser.diagnostics.size());
+            assertEquals(engine, 4, parser.diagnostics.get(0).line);
+        }
+
+        String report = ParseDiagnostic.report();
+        assertTrue(report, report.startsWith("Recovered from 2 syntax errors in 1 modules:"));
+        assertTrue(report, report.contains("invalid_python.py:4:10: "));
+        assertEquals(null, ParseDiagnostic.report());
+    }
+
+    @Test
+    public void recoveringFromMissingNames() {
+        PyWriterConfig config = new PyWriterConfig();
+        config.loadRecoverFromErrors(ABBREV_YES);
+        String source = "class :\n    def method(self): pass\ndef (): pass\ndef last(): pass\n";
+        for (String engine : Arrays.asList(ABBREV_EXTRACTION_ENGINE_TREE, ABBREV_EXTRACTION_ENGINE_STREAM)) {
+            config.loadExtractionEngine(engine);
+            SourceParser parser = new SourceParser("missing.py", source, config);
+            parser.loadFunctions();
+            assertEquals(engine, "[./method, ./last]", parser.pyModule.functions.toString());
+            assertEquals(engine, 2, parser.diagnostics.size());
+        }
+        ParseDiagnostic.report();
+    }
+
+    @Test
+    public void parseInvalidPythonFileFallsBackToLl() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        config.loadParseMode(ABBREV_PARSE_MODE_SLL);
+        long fallbacks = FileInputParser.llFallbacks.get();
+        assertEquals("error", extractFunctions("src/test/resources/invalid_python.py", config));
+        assertEquals(fallbacks + 1, FileInputParser.llFallbacks.get());
+    }
+
+    @Test
+    public void dfaCacheStatisticsClearAndTrim() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        for (String module : validSourceModules()) {
+            extractFunctions(module, config);
+        }
+        DfaCache.Statistics warm = DfaCache.statistics();
+        assertTrue(warm.parserStates() > 0);
+        assertTrue(warm.lexerStates > 0);
+        assertTrue(warm.estimatedBytes() > 0);
+
+        DfaCache.trim(warm.estimatedBytes() / 2);
+        DfaCache.Statistics trimmed = DfaCache.statistics();
+        assertTrue(trimmed.estimatedBytes() <= warm.estimatedBytes() / 4);
+        assertEquals(warm.trims + 1, trimmed.trims);
+
+        DfaCache.clear();
+        DfaCache.Statistics cleared = DfaCache.statistics();
+        assertEquals(0, cleared.parserStates());
+        assertEquals(0, cleared.lexerStates);
+        assertEquals(0, cleared.contexts);
+
+        // the parsing works the same with the cleared cache
+        assertEquals("[./function1, ./function2]",
+                extractFunctions("src/test/resources/simple.py", config));
+    }
+
+    @Test
+    public void dfaCacheClearWaitsForRunningParses() throws Exception {
+        Lock parsing = DfaCache.parsing();
+        parsing.lock();
+        Thread clear = new Thread(DfaCache::clear);
+        try {
+            clear.start();
+            clear.join(200);
+            assertTrue(clear.isAlive());
+        } finally {
+            parsing.unlock();
+        }
+        clear.join();
+        assertEquals(0, DfaCache.statistics().parserStates());
+    }
+
+    @Test
+    public void dfaCacheTrimUnderTheLimitDoesNotWaitForParses() throws Exception {
+        Lock parsing = DfaCache.parsing();
+        parsing.lock();
+        Thread trim = new Thread(() -> DfaCache.trim(Long.MAX_VALUE));
+        try {
+            trim.start();
+            trim.join(10000);
+            assertFalse(trim.isAlive());
+        } finally {
+            parsing.unlock();
+        }
+    }
+
+    /**
+     * Get functions found in a module as a string, or the error if the module cannot be parsed.
+     */
+    static String extractFunctions(String module, PyWriterConfig config) throws Exception {
+        SourceParser parser = new SourceParser(module, config);
+        try {
+            parser.loadFunctions();
+        } catch (RuntimeException e) {
+            return "error";
+        }
+        return parser.pyModule.functions.toString();
+    }
+
+    /**
+     * Get all source modules of the test cases except the one with the invalid syntax.
+     */
+    static List<String> validSourceModules() throws Exception {
+        return Files.walk(Paths.get("src/test/resources"))
+                .filter(Files::isRegularFile)
+                .filter(p -> p.getFileName().toString().endsWith(pythonModuleExtension))
+                .filter(p -> !p.getFileName().toString().equals("invalid_python.py"))
+                .map(Path::toString)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
     @Test
     public void simpleFunctionTestNoneDocstrings() throws Exception {
         Runner runner = new Runner();
@@ -130,6 +648,58 @@ public class ITSourceParserTest {
         }
     }
 
+    @Test
+    public void createTestsRecursivelyInParallel() throws Exception {
+        createTestsRecursivelyWithOptions("--parallelism=4");
+    }
+
+    @Test
+    public void createTestsRecursivelyWithPipeline() throws Exception {
+        createTestsRecursivelyWithOptions("--pipeline=y", "--pipeline-queue-capacity=1",
+                "--pipeline-read-threads=1", "--pipeline-parse-threads=3",
+                "--pipeline-render-threads=2", "--pipeline-write-threads=1");
+    }
+
+    /**
+     * Generate tests for the multiple paths case with the given runner options
+     * and compare them with the expected tests.
+     */
+    private static void createTestsRecursivelyWithOptions(String... options) throws Exception {
+        FilesUtils.copyFolder(
+                Paths.get("src/test/resources/cases/MultiplePaths/MultiplePathsTemplate"),
+                Paths.get("src/test/resources/cases/MultiplePaths/MultiplePathsGenTests"));
+
+        Runner runner = new Runner();
+        runner.loadOptions(options);
+        runner.config.loadSourceModules("src/test/resources/cases/MultiplePaths/MultiplePathsGenTests");
+        runner.config.loadTestsOutputDir("tests");
+        runner.config.loadTestImportPackages("os;sys;unittest;re;shutil");
+        runner.config.loadTestIndentation("2");
+        runner.config.loadTestState(ABBREV_TESTSTATE_PASS);
+        runner.config.loadTestFunctionNamePrefix("test");
+        runner.config.loadTestFunctionDocstringType(ABBREV_DOCSTRINGS_SOURCE);
+        runner.config.loadTestsInsideClass(ABBREV_YES);
+        runner.config.loadTestSuiteClassName("TestCase");
+        runner.config.loadTestSuiteHaveSetUp(ABBREV_YES);
+        runner.config.loadTestSuiteHaveTearDown(ABBREV_YES);
+        runner.generateTests();
+
+        List<Path> paths = Files
+                .walk(Paths.get("src/test/resources/cases/MultiplePaths/MultiplePathsGenTests"))
+                .filter(Files::isRegularFile)
+                .filter(p -> p.getFileName().toString().endsWith(pythonModuleExtension))
+                .collect(Collectors.toList());
+
+        for (Path path : paths) {
+            Path expectedPath = Paths.get(path.toString().replace("MultiplePathsGenTests",
+                    "MultiplePathsGenTestsExpected"));
+            if (!Files.readAllLines(path).equals(Files.readAllLines(expectedPath))) {
+                fail(MessageFormat.format("Diff found between {0} -> {1} {0} -> {2}",
+                        System.lineSeparator(), path, expectedPath));
+            }
+        }
+    }
+
     @Test
     public void skipModulesWithNoFuncs() throws Exception {
         Runner runner = new Runner();
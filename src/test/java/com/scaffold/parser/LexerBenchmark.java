@@ -0,0 +1,52 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Throughput of the lexer on the given source modules (the test resources by default).
+ * Run with `java -cp <test classpath> com.scaffold.parser.LexerBenchmark [module.py ...]`.
+ */
+public class LexerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Iterable<String> modules = args.length > 0 ? Arrays.asList(args)
+                : ITSourceParserTest.validSourceModules();
+        List<String> sources = new ArrayList<>();
+        for (String module : modules) {
+            sources.add(Files.readString(Paths.get(module)));
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long tokens = 0;
+            long start = System.nanoTime();
+            for (String source : sources) {
+                tokens += lex(CharStreams.fromString(source));
+            }
+            long nanos = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("%d tokens in %.1f ms, %.2f million tokens/s%n", tokens, nanos / 1e6,
+                        tokens * 1e3 / nanos);
+            }
+        }
+    }
+
+    private static long lex(CharStream input) {
+        Python3Lexer lexer = new Builder.Lexer(input).build();
+        long tokens = 0;
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
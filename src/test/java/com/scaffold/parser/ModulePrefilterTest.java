@@ -0,0 +1,85 @@
+package com.scaffold.parser;
+
+import com.scaffold.console.Definitions.SkipReason;
+import com.scaffold.writer.PyWriterConfig;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModulePrefilterTest {
+
+    private static ByteBuffer bytes(String source) {
+        return ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean hasTestableDef(String source) {
+        return ModulePrefilter.hasTestableDef(bytes(source));
+    }
+
+    @Test
+    public void findTestableDefinitions() {
+        assertTrue(hasTestableDef("def f():\n    pass\n"));
+        assertTrue(hasTestableDef("x = 1\r\nclass A:\r\n\tdef  method(self): pass\r\n"));
+        assertTrue(hasTestableDef("async def fetch():\n    pass"));
+        assertTrue(hasTestableDef("\uFEFFdef f(): pass\n"));
+        assertTrue(hasTestableDef("def __init__(self): pass\ndef __private(self): pass\n"));
+        assertTrue(hasTestableDef("s = '''\ndef in_string():\n'''\n"));
+        assertTrue(hasTestableDef("def \\\n        f(): pass\n"));
+
+        assertFalse(hasTestableDef(""));
+        assertFalse(hasTestableDef("\"Empty module\"\n"));
+        assertFalse(hasTestableDef("defaults = {}\nx = undef(1)\n# def commented(): pass\n"));
+        assertFalse(hasTestableDef("def __somefunc__():\n    return 42\n"));
+        assertFalse(hasTestableDef("f = lambda: 1\nclass A:\n    pass\n"));
+    }
+
+    @Test
+    public void findGeneratedMarkersInHeaderComments() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertTrue(ModulePrefilter.hasGeneratedMarker(bytes("#!/usr/bin/env python\n"
+                + "  # @generated by tool\ndef f(): pass\n"), config));
+        assertTrue(ModulePrefilter.hasGeneratedMarker(bytes("\uFEFF# Generated by the protocol buffer compiler."
+                + "\r\n"), config));
+        assertFalse(ModulePrefilter.hasGeneratedMarker(bytes("\"\"\"Generated docs. DO NOT EDIT.\"\"\"\n"
+                + "def f(): pass\n"), config));
+        assertFalse(ModulePrefilter.hasGeneratedMarker(bytes("X = '@generated'  # constant\n"), config));
+
+        config.loadGeneratedMarkers("DO NOT EDIT");
+        assertTrue(ModulePrefilter.hasGeneratedMarker(bytes("# DO NOT EDIT\n"), config));
+    }
+
+    @Test
+    public void skipModulesByReason() {
+        PyWriterConfig config = new PyWriterConfig();
+        long skipped = ModulePrefilter.skippedModules();
+        assertNull(ModulePrefilter.check(bytes("def f(): pass\n"), config));
+        assertEquals(SkipReason.NO_FUNCTIONS, ModulePrefilter.check(bytes("X = 1\n"), config));
+        assertEquals(SkipReason.GENERATED, ModulePrefilter.check(bytes("# -*- coding: utf-8 -*-\n"
+                + "# Generated by the protocol buffer compiler.  DO NOT EDIT!\ndef f(): pass\n"), config));
+
+        // the markers are looked for only in the header
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < ModulePrefilter.HEADER_LINES; i++) {
+            source.append("def f").append(i).append("(): pass\n");
+        }
+        assertNull(ModulePrefilter.check(bytes(source + "# @generated\n"), config));
+        // and only in the comments
+        assertNull(ModulePrefilter.check(bytes("\"\"\"Settings, @generated values are overwritten.\n"
+                + "DO NOT EDIT the defaults.\n\"\"\"\ndef f(): pass\n"), config));
+
+        config.loadMaxModuleSize("1");
+        assertEquals(SkipReason.TOO_LARGE, ModulePrefilter.check(bytes(source + new String(new char[1024])),
+                config));
+        assertEquals(skipped + 3, ModulePrefilter.skippedModules());
+
+        config.loadPrefilter("n");
+        assertNull(ModulePrefilter.check(bytes("X = 1\n"), config));
+        assertEquals(skipped + 3, ModulePrefilter.skippedModules());
+    }
+}
@@ -0,0 +1,114 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time of finding the functions in already built parse trees, with the OutlineWalker and with
+ * the generic listener walk looking up the enclosing class among the ancestors it replaced.
+ * Run with `java -cp <test classpath> com.scaffold.parser.OutlineWalkerBenchmark [module.py ...]`;
+ * without modules, a flat module with many definitions and a deeply nested one are generated.
+ */
+public class OutlineWalkerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (String module : args) {
+            sources.put(module, Files.readString(Paths.get(module)));
+        }
+        if (sources.isEmpty()) {
+            sources.put("3000 classes + 3000 functions", flatModule(3000));
+            sources.put("300 functions nested 16 blocks deep", nestedModule(300, 16, 20));
+        }
+
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            ParseTree tree = new Builder.Parser(source.getValue()).build().file_input();
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                int listenerFunctions = walkWithListener(tree);
+                long listenerNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                int[] outlineFunctions = {0};
+                OutlineWalker.walk(tree, (parent, name, offset) -> outlineFunctions[0]++);
+                long outlineNanos = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    System.out.printf("%s: listener %.2f ms, outline walker %.2f ms (%d functions)%n",
+                            source.getKey(), listenerNanos / 1e6, outlineNanos / 1e6, outlineFunctions[0]);
+                }
+                if (listenerFunctions != outlineFunctions[0]) {
+                    throw new IllegalStateException("The walks have found different functions");
+                }
+            }
+        }
+    }
+
+    /**
+     * Walk the whole tree the way the functions used to be found, looking for the class
+     * of every function among up to 100 of its ancestors.
+     */
+    private static int walkWithListener(ParseTree tree) {
+        int[] functions = {0};
+        ParseTreeWalker.DEFAULT.walk(new Python3BaseListener() {
+
+            @Override
+            public void enterFuncdef(Python3Parser.FuncdefContext ctx) {
+                List<ParserRuleContext> parents = new ArrayList<>();
+                parents.add(ctx.getParent());
+                for (int lastParentIndex = 0; lastParentIndex < 100; lastParentIndex++) {
+                    ParserRuleContext parent = parents.get(lastParentIndex).getParent();
+                    if (parent == null || parent instanceof Python3Parser.ClassdefContext) {
+                        functions[0]++;
+                        break;
+                    }
+                    parents.add(parent);
+                }
+            }
+        }, tree);
+        return functions[0];
+    }
+
+    private static String flatModule(int definitions) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < definitions; i++) {
+            source.append("class C").append(i).append("(object):\n")
+                    .append("    def m").append(i).append("(self, a, b=1):\n")
+                    .append("        x = [j * a + b for j in range(10) if j % 2]\n")
+                    .append("        return {'k': x, 'v': (a, b)}\n")
+                    .append("def f").append(i).append("(a):\n")
+                    .append("    if a:\n")
+                    .append("        return a + 1\n")
+                    .append("    return None\n");
+        }
+        return source.toString();
+    }
+
+    private static String nestedModule(int definitions, int depth, int statements) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < definitions; i++) {
+            source.append("class K").append(i).append(":\n");
+            String indent = "    ";
+            for (int level = 0; level < depth - 1; level++) {
+                source.append(indent).append("if x").append(level).append(":\n");
+                indent += "    ";
+            }
+            source.append(indent).append("def g").append(i).append("(self):\n");
+            indent += "    ";
+            for (int statement = 0; statement < statements; statement++) {
+                source.append(indent).append("y").append(statement).append(" = [a + b * c for a in range(")
+                        .append(statement).append(") for b in z if a and not b or c]\n");
+            }
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package com.scaffold.parser;
+
+import com.scaffold.writer.PyWriterConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Time of loading the functions of many modules with new lexers and parsers for every module
+ * and with the ones reused per thread (`--reuse-parsers`).
+ * Run with `java -cp <test classpath> com.scaffold.parser.ParserReuseBenchmark [module.py ...]`;
+ * without modules, a tiny module is loaded many times, where the construction costs the most.
+ */
+public class ParserReuseBenchmark {
+
+    private static final int WARMUP_ROUNDS = 4;
+    private static final int MEASURED_ROUNDS = 6;
+    private static final int TINY_MODULES = 5000;
+
+    public static void main(String[] args) throws Exception {
+        List<String> sources = new ArrayList<>();
+        for (String module : args) {
+            sources.add(Files.readString(Paths.get(module)));
+        }
+        if (sources.isEmpty()) {
+            sources.addAll(Collections.nCopies(TINY_MODULES, "class A(object):\n    def m(self):\n"
+                    + "        return 1\n\ndef f(x):\n    return x + 1\n"));
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            for (String reuse : new String[]{"n", "y"}) {
+                PyWriterConfig config = new PyWriterConfig();
+                config.loadReuseParsers(reuse);
+                long start = System.nanoTime();
+                for (String source : sources) {
+                    new SourceParser("module.py", source, config).loadFunctions();
+                }
+                long nanos = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    System.out.printf("reuse=%s: %d modules in %.1f ms, %.1f us per module%n", reuse,
+                            sources.size(), nanos / 1e6, nanos / 1e3 / sources.size());
+                }
+            }
+        }
+    }
+}
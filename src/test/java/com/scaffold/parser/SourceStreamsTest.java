@@ -0,0 +1,105 @@
+package com.scaffold.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SourceStreamsTest {
+
+    private static CharStream open(byte[] bytes) throws IOException {
+        return SourceStreams.open(ByteBuffer.wrap(bytes), "module.py");
+    }
+
+    private static String text(CharStream stream) {
+        return stream.getText(Interval.of(0, stream.size() - 1));
+    }
+
+    @Test
+    public void asciiSourceIsNotDecoded() throws Exception {
+        String source = "def f():\n    return 1\n";
+        CharStream stream = open(source.getBytes(StandardCharsets.US_ASCII));
+        assertTrue(stream instanceof ByteBufferCharStream);
+        assertEquals(source, text(stream));
+        assertEquals("module.py", stream.getSourceName());
+
+        // the same behaviour as the stream of ANTLR, including looking back
+        CharStream expected = CharStreams.fromString(source);
+        for (int i = 0; i <= source.length(); i++) {
+            for (int offset : new int[]{-3, -1, 1, 2}) {
+                assertEquals(expected.LA(offset), stream.LA(offset));
+            }
+            if (i < source.length()) {
+                expected.consume();
+                stream.consume();
+            }
+        }
+        assertEquals(IntStream.EOF, stream.LA(1));
+        assertEquals("f()", stream.getText(Interval.of(4, 6)));
+    }
+
+    @Test
+    public void utf8SourceIsDecoded() throws Exception {
+        String source = "# привет\ndef f():\n    return 'ü'\n";
+        CharStream stream = open(source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(source, text(stream));
+    }
+
+    @Test
+    public void byteOrderMarkIsSkipped() throws Exception {
+        byte[] source = "x = 1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[source.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(source, 0, bytes, 3, source.length);
+        assertEquals("x = 1\n", text(open(bytes)));
+    }
+
+    @Test
+    public void codingCookieIsHonoured() throws Exception {
+        String latin = "#!/usr/bin/env python\n# -*- coding: latin-1 -*-\nx = 'é'\n";
+        assertEquals(latin, text(open(latin.getBytes(StandardCharsets.ISO_8859_1))));
+
+        String cyrillic = "# vim: set fileencoding=cp1251 :\nx = 'ж'\n";
+        assertEquals(cyrillic, text(open(cyrillic.getBytes("windows-1251"))));
+
+        // the cookie is only looked for on the first two lines
+        String late = "x = 1\n# coding: latin-1\ny = 'é'\n";
+        try {
+            open(late.getBytes(StandardCharsets.ISO_8859_1));
+            fail("Source with invalid UTF-8 should not be opened");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownCodingCookie() throws Exception {
+        open("# coding: no-such-encoding\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void largeFileIsMapped() throws Exception {
+        StringBuilder source = new StringBuilder();
+        while (source.length() < SourceStreams.MAP_THRESHOLD * 2) {
+            source.append("def f").append(source.length()).append("():\n    pass\n");
+        }
+        Path path = Files.createTempFile("pybutler", ".py");
+        // a mapped file cannot be deleted on Windows until the buffer is garbage collected
+        path.toFile().deleteOnExit();
+        Files.write(path, source.toString().getBytes(StandardCharsets.US_ASCII));
+        assertEquals(source.toString(), text(SourceStreams.open(path)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.scaffold.util;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GitChangesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path repository;
+
+    private void git(String... arguments) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(GitChanges.gitCommand, "-C", this.repository.toString(),
+                "-c", "user.name=pybutler", "-c", "user.email=pybutler@localhost", "-c", "commit.gpgsign=false"));
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        process.getInputStream().transferTo(System.out);
+        assertEquals(0, process.waitFor());
+    }
+
+    private void write(String path) throws IOException {
+        Path file = this.repository.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Collections.singletonList("def function(): pass"));
+    }
+
+    @Before
+    public void createRepository() throws Exception {
+        this.repository = this.folder.getRoot().toPath().toRealPath();
+        try {
+            git("init", "-q");
+        } catch (IOException e) {
+            Assume.assumeTrue(false);
+        }
+        Files.write(this.repository.resolve(".gitignore"), Collections.singletonList("build/"));
+        write("src/unchanged.py");
+        write("src/modified.py");
+        write("src/renamed.py");
+        write("src/deleted.py");
+        write("src/dirty.py");
+        git("add", "-A");
+        git("commit", "-q", "-m", "base");
+        git("tag", "base");
+    }
+
+    @Test
+    public void listFilesChangedSinceBase() throws Exception {
+        Files.write(this.repository.resolve("src/modified.py"), Collections.singletonList("def other(): pass"));
+        write("src/added.py");
+        git("mv", "src/renamed.py", "src/moved.py");
+        git("rm", "-q", "src/deleted.py");
+        git("add", "-A");
+        git("commit", "-q", "-m", "change");
+        Files.write(this.repository.resolve("src/dirty.py"), Collections.singletonList("def dirty(): pass"));
+        write("src/untracked.py");
+        write("build/generated.py");
+
+        assertEquals(this.repository, GitChanges.repositoryRoot(this.repository.resolve("src")));
+        assertEquals(Arrays.asList("src/added.py", "src/dirty.py", "src/modified.py", "src/moved.py",
+                "src/untracked.py"), relative(GitChanges.changedFiles(this.repository, "base")));
+    }
+
+    @Test
+    public void failOnUnknownRevision() {
+        try {
+            GitChanges.changedFiles(this.repository, "missing");
+            throw new AssertionError("the changes since an unknown revision have been listed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("missing"));
+        }
+    }
+
+    private List<String> relative(List<Path> files) {
+        List<String> paths = new ArrayList<>();
+        for (Path file : files) {
+            paths.add(this.repository.relativize(file).toString().replace('\\', '/'));
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,89 @@
+package com.scaffold.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GitIgnoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static boolean matches(String line, String path, boolean directory) {
+        GitIgnore.Rule rule = GitIgnore.Rule.parse(line);
+        return (directory || !rule.directoryOnly) && rule.pattern.matcher(path).matches();
+    }
+
+    @Test
+    public void parseRules() {
+        assertNull(GitIgnore.Rule.parse(""));
+        assertNull(GitIgnore.Rule.parse("   "));
+        assertNull(GitIgnore.Rule.parse("# comment"));
+        assertTrue(matches("\\#file", "#file", false));
+        assertTrue(matches("\\!file", "!file", false));
+        assertTrue(matches("trailing  ", "trailing", false));
+        assertTrue(matches("space\\ ", "space ", false));
+        assertTrue(GitIgnore.Rule.parse("!keep.py").negated);
+    }
+
+    @Test
+    public void matchNamesAtAnyDepth() {
+        assertTrue(matches("build", "build", true));
+        assertTrue(matches("build", "src/build", false));
+        assertFalse(matches("build", "rebuild", false));
+        assertTrue(matches("*.pyc", "src/module.pyc", false));
+        assertFalse(matches("*.pyc", "src/module.py", false));
+        assertTrue(matches("venv/", "app/venv", true));
+        assertFalse(matches("venv/", "app/venv", false));
+    }
+
+    @Test
+    public void anchorPatternsWithSeparators() {
+        assertTrue(matches("/dist", "dist", true));
+        assertFalse(matches("/dist", "src/dist", true));
+        assertTrue(matches("docs/build", "docs/build", true));
+        assertFalse(matches("docs/build", "src/docs/build", true));
+        assertFalse(matches("src/*.py", "src/a/module.py", false));
+        assertTrue(matches("**/migrations", "app/db/migrations", true));
+        assertTrue(matches("**/migrations", "migrations", true));
+        assertTrue(matches("app/**/generated", "app/generated", true));
+        assertTrue(matches("app/**/generated", "app/a/b/generated", true));
+        assertTrue(matches("vendor/**", "vendor/lib/module.py", false));
+        assertFalse(matches("src/[!a]*.py", "src/b/x.py", false));
+        // the classes are read the same way as by the folders to ignore
+        assertTrue(matches("[]_]*.py", "_module.py", false));
+        assertFalse(matches("[!]_]*.py", "_module.py", false));
+        assertTrue(matches("[!]_]*.py", "module.py", false));
+    }
+
+    @Test
+    public void applyDeeperAndLaterRulesFirst() throws Exception {
+        Path root = this.folder.getRoot().toPath().toRealPath();
+        Files.createDirectories(root.resolve(".git/info"));
+        Files.write(root.resolve(".git/info/exclude"), Arrays.asList("local.txt", "shared.py"));
+        Files.write(root.resolve(".gitignore"), Arrays.asList("*.py", "!keep*.py", "!shared.py"));
+        Path app = Files.createDirectories(root.resolve("app"));
+        Files.write(app.resolve(".gitignore"), Arrays.asList("!module.py", "keep_old.py"));
+
+        GitIgnore rules = GitIgnore.none.enter(root);
+        assertTrue(rules.isIgnored(root.resolve("module.py"), false));
+        assertFalse(rules.isIgnored(root.resolve("keep_this.py"), false));
+        assertTrue(rules.isIgnored(root.resolve("local.txt"), false));
+        // the ignore files of the repository take precedence over the exclude file
+        assertFalse(rules.isIgnored(root.resolve("shared.py"), false));
+
+        GitIgnore appRules = rules.enter(app);
+        assertFalse(appRules.isIgnored(app.resolve("module.py"), false));
+        assertTrue(appRules.isIgnored(app.resolve("other.py"), false));
+        assertTrue(appRules.isIgnored(app.resolve("keep_old.py"), false));
+        assertFalse(appRules.isIgnored(app.resolve("keep_new.py"), false));
+    }
+}
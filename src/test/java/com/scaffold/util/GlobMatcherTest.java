@@ -0,0 +1,90 @@
+package com.scaffold.util;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GlobMatcherTest {
+
+    private static boolean matches(String pattern, String path) {
+        return new GlobMatcher(Collections.singletonList(pattern)).matches(Paths.get(path));
+    }
+
+    @Test
+    public void matchWholeNames() {
+        assertTrue(matches("tests", "project/tests"));
+        assertTrue(matches("tests", "/project/tests/unit"));
+        assertFalse(matches("tests", "project/contests"));
+        assertFalse(matches("tests", "project/tests_data"));
+        assertTrue(matches("app/tests", "project/app/tests/unit"));
+        assertFalse(matches("app/tests", "project/app/unit/tests"));
+    }
+
+    @Test
+    public void matchGlobs() {
+        assertTrue(matches("**/migrations/**", "project/app/migrations/0001_initial.py"));
+        assertFalse(matches("**/migrations/**", "project/app/migration/0001_initial.py"));
+        assertTrue(matches("*_pb2.py", "project/proto/messages_pb2.py"));
+        assertFalse(matches("*_pb2.py", "project/proto/messages_pb2.pyi"));
+        assertTrue(matches("app/**/generated", "project/app/a/b/generated/module.py"));
+        assertTrue(matches("app/**/generated", "project/app/generated/module.py"));
+        assertTrue(matches("test_?.py", "test_1.py"));
+        assertFalse(matches("test_?.py", "test_12.py"));
+        assertTrue(matches("[!_]*.py", "module.py"));
+        assertFalse(matches("[!_]*.py", "_module.py"));
+        assertTrue(matches("v[0-9]", "api/v2/module.py"));
+        assertTrue(matches("\\*", "project/*/module.py"));
+        assertFalse(matches("\\*", "project/any/module.py"));
+    }
+
+    @Test
+    public void anchorPatternsStartingWithSeparator() {
+        assertTrue(matches("/build", "build/module.py"));
+        assertFalse(matches("/build", "project/build/module.py"));
+        assertFalse(matches("", "project/module.py"));
+        assertFalse(matches("/", "project/module.py"));
+    }
+
+    @Test
+    public void decideDirectoriesEarly() {
+        GlobMatcher matcher = new GlobMatcher(Arrays.asList("/build/out", "/dist"));
+        GlobMatcher.State build = matcher.start().next("build");
+        assertFalse(build.isDecided());
+
+        // nothing under a directory no pattern can match any more is looked at
+        GlobMatcher.State source = matcher.start().next("src");
+        assertTrue(source.isDecided());
+        assertFalse(source.isMatch());
+        assertSame(source, source.next("out"));
+
+        GlobMatcher.State out = build.next("out");
+        assertTrue(out.isDecided());
+        assertTrue(out.isMatch());
+        assertSame(out, out.next("module.py"));
+        assertSame(out, matcher.start().next("build").next("out"));
+    }
+
+    @Test
+    public void matchAnyOfManyPatterns() {
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            patterns.add("folder" + i);
+            patterns.add("**/generated" + i + "/**");
+            patterns.add("*_gen" + i + ".py");
+        }
+        GlobMatcher matcher = new GlobMatcher(patterns);
+        assertTrue(matcher.matches(Paths.get("project/folder499/module.py")));
+        assertTrue(matcher.matches(Paths.get("project/app/generated0/module.py")));
+        assertTrue(matcher.matches(Paths.get("project/app/module_gen250.py")));
+        assertFalse(matcher.matches(Paths.get("project/folder500/module.py")));
+        assertFalse(matcher.matches(Paths.get("project/app/module_gen.py")));
+    }
+}
@@ -0,0 +1,210 @@
+package com.scaffold.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.scaffold.writer.PyModule.pythonModuleExtension;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleDiscoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file(String path) throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+
+    @Test
+    public void discoverInWalkOrder() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            file("package" + i + "/module.py");
+            file("package" + i + "/nested/module.py");
+            file("package" + i + "/notes.txt");
+        }
+        Path root = this.folder.getRoot().toPath();
+        List<Path> walked = Files.walk(root).filter(Files::isRegularFile)
+                .filter(p -> p.getFileName().toString().endsWith(pythonModuleExtension))
+                .collect(Collectors.toList());
+
+        assertEquals(walked, new ModuleDiscovery(directory -> false).discover(Collections.singletonList(root)));
+    }
+
+    @Test
+    public void keepModulesOfEverySourcePathOnce() throws Exception {
+        Path first = file("first/module.py");
+        Path second = file("second/module.py");
+        Path nested = file("second/nested/module.py");
+        Path other = file("second/other.txt");
+
+        List<Path> modules = new ModuleDiscovery(directory -> false).discover(Arrays.asList(
+                first.getParent(), second.getParent(), nested.getParent(), nested, other,
+                this.folder.getRoot().toPath().resolve("missing")));
+        assertEquals(Arrays.asList(first, second, nested, other), modules);
+    }
+
+    @Test
+    public void pruneSkippedDirectories() throws Exception {
+        Path module = file("src/module.py");
+        file("src/tests/test_module.py");
+        file("src/tests/unit/test_unit.py");
+        file(".git/hooks/hook.py");
+        file("src/__pycache__/module.py");
+
+        Set<Path> checked = ConcurrentHashMap.newKeySet();
+        List<Path> modules = new ModuleDiscovery(directory -> {
+            checked.add(directory);
+            return directory.getFileName().toString().equals("tests");
+        }).discover(Collections.singletonList(this.folder.getRoot().toPath()));
+
+        assertEquals(Collections.singletonList(module), modules);
+        // the directories are checked by their paths below the source path
+        assertTrue(checked.contains(Paths.get("src/tests")));
+        // nothing below a skipped directory is looked at
+        assertFalse(checked.contains(Paths.get("src/tests/unit")));
+        assertFalse(checked.contains(Paths.get(".git")));
+    }
+
+    @Test
+    public void matchSkippedDirectoriesBelowTheSourcePath() throws Exception {
+        Path module = file("src/module.py");
+        Path nested = file("src/build/module.py");
+        file("build/module.py");
+        file("tools/module.py");
+
+        // neither pattern matches the directories above the source path, such as the temporary directory
+        GlobMatcher folders = new GlobMatcher(Arrays.asList("/build", "t*"));
+        Path root = this.folder.getRoot().toPath().toAbsolutePath();
+        assertEquals(new HashSet<>(Arrays.asList(module, nested)),
+                new HashSet<>(new ModuleDiscovery(folders::matches).discover(Collections.singletonList(root))));
+    }
+
+    @Test
+    public void skipWhatGitIgnores() throws Exception {
+        Path root = this.folder.getRoot().toPath();
+        Files.createDirectories(root.resolve(".git/info"));
+        Files.write(root.resolve(".git/info/exclude"), Collections.singletonList("scratch.py"));
+        Files.write(root.resolve(".gitignore"), Arrays.asList("build/", "*_pb2.py", "!keep_pb2.py"));
+        Path module = file("src/module.py");
+        Path kept = file("src/proto/keep_pb2.py");
+        file("src/proto/messages_pb2.py");
+        file("src/scratch.py");
+        file("build/lib/module.py");
+        Path vendored = file("src/vendor/module.py");
+        file("src/vendor/lib/module.py");
+        Files.write(root.resolve("src/vendor/.gitignore"), Arrays.asList("/lib", "!*_pb2.py"));
+        Path vendoredProto = file("src/vendor/proto_pb2.py");
+
+        Set<Path> checked = ConcurrentHashMap.newKeySet();
+        List<Path> modules = new ModuleDiscovery(directory -> {
+            checked.add(directory);
+            return false;
+        }, true).discover(Collections.singletonList(root.resolve("src")));
+
+        assertEquals(new HashSet<>(Arrays.asList(module, kept, vendored, vendoredProto)), new HashSet<>(modules));
+        // the ignored folders are not entered
+        assertFalse(checked.contains(Paths.get("vendor/lib")));
+        assertTrue(checked.contains(Paths.get("vendor")));
+
+        // without git the same folders are walked
+        assertEquals(7, new ModuleDiscovery(directory -> false).discover(Collections.singletonList(root.resolve("src")))
+                .size());
+    }
+
+    @Test
+    public void streamModules() throws Exception {
+        Path root = this.folder.getRoot().toPath();
+        for (int i = 4; i >= 0; i--) {
+            file("package" + i + "/module.py");
+            file("package" + i + "/nested/module.py");
+            file("package" + i + "/a.py");
+        }
+        file("package0/tests/test_module.py");
+        ModuleDiscovery discovery = new ModuleDiscovery(directory -> directory.endsWith("tests"));
+        List<Path> walked = discovery.discover(Arrays.asList(root, root.resolve("package3")));
+
+        List<Path> sorted = new ArrayList<>(walked);
+        sorted.sort(Comparator.comparing(Path::toString));
+        try (Stream<Path> modules = discovery.stream(Arrays.asList(root, root.resolve("package3")), true)) {
+            assertEquals(sorted, modules.collect(Collectors.toList()));
+        }
+        try (Stream<Path> modules = discovery.stream(Arrays.asList(root, root.resolve("package3")), false)) {
+            List<Path> streamed = modules.collect(Collectors.toList());
+            assertEquals(walked.size(), streamed.size());
+            assertEquals(new HashSet<>(walked), new HashSet<>(streamed));
+        }
+    }
+
+    @Test
+    public void streamMoreModulesThanTheWalkIsAhead() throws Exception {
+        for (int i = 0; i < ModuleDiscovery.STREAM_CAPACITY + 10; i++) {
+            file("package" + i % 3 + "/module" + i + ".py");
+        }
+        try (Stream<Path> modules = new ModuleDiscovery(directory -> false)
+                .stream(Collections.singletonList(this.folder.getRoot().toPath()), false)) {
+            assertEquals(ModuleDiscovery.STREAM_CAPACITY + 10, modules.count());
+        }
+    }
+
+    @Test
+    public void stopTheWalkWhenTheStreamIsClosed() throws Exception {
+        for (int i = 0; i < 3 * ModuleDiscovery.STREAM_CAPACITY; i++) {
+            file("package" + i % 10 + "/module" + i + ".py");
+        }
+        try (Stream<Path> modules = new ModuleDiscovery(directory -> false)
+                .stream(Collections.singletonList(this.folder.getRoot().toPath()), false)) {
+            assertTrue(modules.findFirst().isPresent());
+        }
+        // the walk would otherwise wait for room in the full queue forever
+        assertTrue(ForkJoinPool.commonPool().awaitQuiescence(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void selectWhatTheWalkFinds() throws Exception {
+        Path root = this.folder.getRoot().toPath();
+        Files.createDirectories(root.resolve(".git/info"));
+        Files.write(root.resolve(".gitignore"), Collections.singletonList("build/"));
+        List<Path> files = Arrays.asList(file("src/module.py"), file("src/tests/test_module.py"),
+                file("src/build/module.py"), file("src/__pycache__/module.py"), file("src/notes.txt"),
+                file("other/module.py"), root.resolve("src/removed.py"), file("src/package/module.py"));
+
+        ModuleDiscovery discovery = new ModuleDiscovery(directory -> directory.endsWith("tests"), true);
+        List<Path> sourcePaths = Collections.singletonList(root.resolve("src"));
+        List<Path> walked = discovery.discover(sourcePaths);
+        assertEquals(Arrays.asList(files.get(0), files.get(7)), walked);
+        assertEquals(new HashSet<>(walked), new HashSet<>(discovery.select(sourcePaths, files)));
+    }
+
+    @Test
+    public void followLinksToFilesOnly() throws Exception {
+        Path module = file("src/module.py");
+        Path root = this.folder.getRoot().toPath();
+        Path link = Files.createSymbolicLink(root.resolve("link.py"), module);
+        Files.createSymbolicLink(root.resolve("linked"), module.getParent());
+
+        List<Path> modules = new ModuleDiscovery(directory -> false).discover(Collections.singletonList(root));
+        assertEquals(1, modules.size());
+        assertTrue(modules.contains(module) || modules.contains(link));
+    }
+}
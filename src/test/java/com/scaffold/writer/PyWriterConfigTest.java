@@ -4,11 +4,16 @@ import com.scaffold.console.Definitions;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static com.scaffold.console.Definitions.*;
 import static com.scaffold.writer.PyWriterConfig.*;
@@ -48,6 +53,55 @@ public class PyWriterConfigTest {
 
     }
 
+    @Test
+    public void testLoadSourceModulesFromSeveralFolders() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        final TemporaryFolder testFolder = new TemporaryFolder();
+        testFolder.create();
+        testFolder.newFolder("first");
+        testFolder.newFolder("second");
+        testFolder.newFolder("second/tests");
+        final String firstModule = testFolder.newFile("first/module.py").toString();
+        final String secondModule = testFolder.newFile("second/module.py").toString();
+        testFolder.newFile("second/tests/test_module.py");
+
+        // the modules of every folder are kept, the overlapping folders give each module once
+        config.loadSourceModules(MessageFormat.format("{0};{1};{2}", new File(testFolder.getRoot(), "first"),
+                new File(testFolder.getRoot(), "second"), testFolder.getRoot()));
+        assertEquals(config.modulePaths, Arrays.asList(firstModule, secondModule));
+    }
+
+    @Test
+    public void testMatchPatternsToIgnoreBelowSourceFolder() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        final TemporaryFolder testFolder = new TemporaryFolder();
+        testFolder.create();
+        testFolder.newFolder("src");
+        testFolder.newFolder("src/build");
+        testFolder.newFolder("build");
+        testFolder.newFolder("tools");
+        final String module = testFolder.newFile("src/module.py").toString();
+        final String buildModule = testFolder.newFile("src/build/module.py").toString();
+        testFolder.newFile("build/module.py");
+        testFolder.newFile("tools/module.py");
+        testFolder.newFile("tools_module.py");
+
+        // the patterns are matched from the source folder down, never against the folders above it
+        config.foldersToIgnore = new ArrayList<>(Arrays.asList("/build", "t*"));
+        config.moduleNamePatternsToIgnore = new ArrayList<>(Collections.singletonList("t*.py"));
+        final String sourceFolder = testFolder.getRoot().getAbsolutePath();
+        config.loadSourceModules(sourceFolder);
+        assertEquals(new HashSet<>(config.modulePaths), new HashSet<>(Arrays.asList(module, buildModule)));
+
+        config.loadStreamModules("y");
+        config.loadSourceModules(sourceFolder);
+        List<String> streamed = new ArrayList<>();
+        try (Stream<String> modules = config.modules()) {
+            modules.forEach(streamed::add);
+        }
+        assertEquals(new HashSet<>(streamed), new HashSet<>(Arrays.asList(module, buildModule)));
+    }
+
 
     @Test
     public void testFilterModulesToIgnore() throws Exception {
@@ -88,6 +142,22 @@ public class PyWriterConfigTest {
         assertEquals(filteredPathsMultipleDirsToExclude, Collections.singletonList(module.toString()));
     }
 
+    @Test
+    public void testFilterModulesToIgnoreByGlob() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        config.foldersToIgnore = new ArrayList<>(Arrays.asList("tests", "**/migrations/**"));
+        config.moduleNamePatternsToIgnore = new ArrayList<>(Arrays.asList("*_pb2.py", "_core"));
+        final Path root = Paths.get("project");
+
+        // the folder names match whole folders only
+        final Path contests = root.resolve("contests/module.py");
+        final Path module = root.resolve("app/module.py");
+        ArrayList<String> filteredPaths = config.filterModulesToIgnore(Arrays.asList(contests, module,
+                root.resolve("tests/test_module.py"), root.resolve("app/migrations/0001_initial.py"),
+                root.resolve("app/messages_pb2.py"), root.resolve("app/db_core.py")));
+        assertEquals(filteredPaths, Arrays.asList(contests.toString(), module.toString()));
+    }
+
     @Test
     public void testLoadModuleNamePatternsToIgnore() {
         PyWriterConfig config = new PyWriterConfig();
@@ -249,5 +319,261 @@ public class PyWriterConfigTest {
                 .get(ABBREV_NO));
     }
 
+    @Test
+    public void testLoadParallelism() {
+        PyWriterConfig config = new PyWriterConfig();
+        config.loadParallelism("");
+        assertEquals(config.parallelism, parallelismDefault);
+        config.loadParallelism("8");
+        assertEquals(config.parallelism, 8);
+        config.loadParallelism("0");
+        assertEquals(config.parallelism, 1);
+        config.loadParallelism("foo");
+        assertEquals(config.parallelism, parallelismDefault);
+    }
+
+    @Test
+    public void testLoadPipeline() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.pipeline, pipelineDefault);
+        config.loadPipeline(ABBREV_YES);
+        assertTrue(config.pipeline);
+        config.loadPipeline(ABBREV_NO);
+        assertFalse(config.pipeline);
+
+        config.loadPipelineQueueCapacity("8");
+        config.loadPipelineReadThreads("3");
+        config.loadPipelineParseThreads("");
+        config.loadPipelineRenderThreads("foo");
+        config.loadPipelineWriteThreads("5");
+        assertEquals(config.pipelineQueueCapacity, 8);
+        assertEquals(config.pipelineReadThreads, 3);
+        assertEquals(config.pipelineParseThreads, pipelineParseThreadsDefault);
+        assertEquals(config.pipelineRenderThreads, pipelineRenderThreadsDefault);
+        assertEquals(config.pipelineWriteThreads, 5);
+    }
+
+    @Test
+    public void testLoadParseMode() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.parseMode, parseModeDefault);
+        config.loadParseMode(ABBREV_PARSE_MODE_LL);
+        assertEquals(config.parseMode, ParseMode.LL);
+        config.loadParseMode(ABBREV_PARSE_MODE_SLL);
+        assertEquals(config.parseMode, ParseMode.SLL_LL);
+        config.loadParseMode("");
+        assertEquals(config.parseMode, parseModeDefault);
+    }
+
+    @Test
+    public void testLoadDfaCacheMaxSize() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.dfaCacheMaxBytes, dfaCacheMaxBytesDefault);
+        config.loadDfaCacheMaxSize("256");
+        assertEquals(config.dfaCacheMaxBytes, 256L * 1024 * 1024);
+        config.loadDfaCacheMaxSize("0");
+        assertEquals(config.dfaCacheMaxBytes, 0L);
+        config.loadDfaCacheMaxSize("foo");
+        assertEquals(config.dfaCacheMaxBytes, dfaCacheMaxBytesDefault);
+    }
+
+    @Test
+    public void testLoadExtractionEngine() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.extractionEngine, extractionEngineDefault);
+        config.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_LEXER);
+        assertEquals(config.extractionEngine, ExtractionEngine.LEXER_OUTLINE);
+        config.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_STREAM);
+        assertEquals(config.extractionEngine, ExtractionEngine.STREAMING);
+        config.loadExtractionEngine(ABBREV_EXTRACTION_ENGINE_TREE);
+        assertEquals(config.extractionEngine, ExtractionEngine.PARSE_TREE);
+        config.loadExtractionEngine("");
+        assertEquals(config.extractionEngine, extractionEngineDefault);
+    }
+
+    @Test
+    public void testLoadRecoverFromErrors() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.recoverFromErrors, recoverFromErrorsDefault);
+        config.loadRecoverFromErrors(ABBREV_YES);
+        assertTrue(config.recoverFromErrors);
+        config.loadRecoverFromErrors(ABBREV_NO);
+        assertFalse(config.recoverFromErrors);
+        config.loadRecoverFromErrors("");
+        assertEquals(config.recoverFromErrors, recoverFromErrorsDefault);
+    }
+
+    @Test
+    public void testLoadChunkThreshold() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.chunkThresholdChars, chunkThresholdCharsDefault);
+        config.loadChunkThreshold("512");
+        assertEquals(config.chunkThresholdChars, 512 * 1024);
+        config.loadChunkThreshold("foo");
+        assertEquals(config.chunkThresholdChars, chunkThresholdCharsDefault);
+    }
 
+    @Test
+    public void testLoadReuseParsers() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.reuseParsers, reuseParsersDefault);
+        config.loadReuseParsers(ABBREV_YES);
+        assertTrue(config.reuseParsers);
+        config.loadReuseParsers(ABBREV_NO);
+        assertFalse(config.reuseParsers);
+    }
+
+    @Test
+    public void testLoadCompactTokens() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.compactTokens, compactTokensDefault);
+        config.loadCompactTokens(ABBREV_YES);
+        assertTrue(config.compactTokens);
+        config.loadCompactTokens(ABBREV_NO);
+        assertFalse(config.compactTokens);
+    }
+
+    @Test
+    public void testLoadParseStackSize() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.parseStackBytes, parseStackMegabytesDefault * 1024L * 1024);
+        config.loadParseStackSize("512");
+        assertEquals(config.parseStackBytes, 512L * 1024 * 1024);
+        config.loadParseStackSize("foo");
+        assertEquals(config.parseStackBytes, parseStackMegabytesDefault * 1024L * 1024);
+    }
+
+    @Test
+    public void testLoadParseTimeout() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.parseTimeoutMillis, parseTimeoutMillisDefault);
+        config.loadParseTimeout("3000");
+        assertEquals(config.parseTimeoutMillis, 3000L);
+        config.loadParseTimeout("foo");
+        assertEquals(config.parseTimeoutMillis, parseTimeoutMillisDefault);
+    }
+
+    @Test
+    public void testLoadPrefilter() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.prefilter, prefilterDefault);
+        config.loadPrefilter(ABBREV_NO);
+        assertFalse(config.prefilter);
+        config.loadPrefilter(ABBREV_YES);
+        assertTrue(config.prefilter);
+    }
+
+    @Test
+    public void testLoadGeneratedMarkers() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.generatedMarkers, generatedMarkersDefault);
+        config.loadGeneratedMarkers("autogenerated;do not modify");
+        assertEquals(config.generatedMarkers, Arrays.asList("autogenerated", "do not modify"));
+        config.loadGeneratedMarkers("");
+        assertEquals(config.generatedMarkers, generatedMarkersDefault);
+    }
+
+    @Test
+    public void testLoadMaxModuleSize() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.maxModuleBytes, maxModuleBytesDefault);
+        config.loadMaxModuleSize("2048");
+        assertEquals(config.maxModuleBytes, 2048L * 1024);
+        config.loadMaxModuleSize("foo");
+        assertEquals(config.maxModuleBytes, maxModuleBytesDefault);
+    }
+
+    @Test
+    public void testLoadProfileReport() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.profileReportPath, profileReportPathDefault);
+        config.loadProfileReport("profile.txt");
+        assertEquals(config.profileReportPath, "profile.txt");
+        config.loadProfileReport("");
+        assertNull(config.profileReportPath);
+    }
+
+    @Test
+    public void testLoadDfaSnapshot() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.dfaSnapshotPath, dfaSnapshotPathDefault);
+        config.loadDfaSnapshot(".pybutler-dfa");
+        assertEquals(config.dfaSnapshotPath, ".pybutler-dfa");
+        config.loadDfaSnapshot("");
+        assertNull(config.dfaSnapshotPath);
+    }
+
+    @Test
+    public void testLoadGitIgnore() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.gitIgnore, gitIgnoreDefault);
+        config.loadGitIgnore(ABBREV_YES);
+        assertTrue(config.gitIgnore);
+        config.loadGitIgnore(ABBREV_NO);
+        assertFalse(config.gitIgnore);
+    }
+
+    @Test
+    public void testLoadStreamModules() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.streamModules, streamModulesDefault);
+        config.loadStreamModules(ABBREV_YES);
+        assertTrue(config.streamModules);
+        config.loadStreamModules(ABBREV_NO);
+        assertFalse(config.streamModules);
+    }
+
+    @Test
+    public void testLoadSortModules() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.sortModules, sortModulesDefault);
+        config.loadSortModules(ABBREV_YES);
+        assertTrue(config.sortModules);
+        config.loadSortModules(ABBREV_NO);
+        assertFalse(config.sortModules);
+    }
+
+    @Test
+    public void testLoadChangedSince() {
+        PyWriterConfig config = new PyWriterConfig();
+        assertEquals(config.changedSinceRef, changedSinceRefDefault);
+        config.loadChangedSince("origin/main");
+        assertEquals(config.changedSinceRef, "origin/main");
+        config.loadChangedSince("");
+        assertNull(config.changedSinceRef);
+    }
+
+    @Test
+    public void testStreamSourceModules() throws Exception {
+        PyWriterConfig config = new PyWriterConfig();
+        config.streamModules = true;
+        config.sortModules = true;
+        config.moduleNamePatternsToIgnore = new ArrayList<>(Collections.singletonList("_pb2"));
+        final TemporaryFolder testFolder = new TemporaryFolder();
+        testFolder.create();
+        testFolder.newFolder("package");
+        testFolder.newFolder("package/tests");
+        final String second = testFolder.newFile("package/b.py").toString();
+        final String first = testFolder.newFile("package/a.py").toString();
+        testFolder.newFile("package/messages_pb2.py");
+        testFolder.newFile("package/__init__.py");
+        testFolder.newFile("package/tests/test_a.py");
+        final String module = testFolder.newFile("module.py").toString();
+
+        // nothing is walked until the modules are taken, and they are taken in the order of their names
+        config.loadSourceModules(testFolder.getRoot().toString());
+        assertTrue(config.modulePaths.isEmpty());
+        List<String> modules = new ArrayList<>();
+        try (Stream<String> stream = config.modules()) {
+            stream.forEach(modules::add);
+        }
+        assertEquals(modules, Arrays.asList(module, first, second));
+
+        config.sortModules = false;
+        modules.clear();
+        try (Stream<String> stream = config.modules()) {
+            stream.forEach(modules::add);
+        }
+        assertEquals(new HashSet<>(modules), new HashSet<>(Arrays.asList(module, first, second)));
+    }
 }
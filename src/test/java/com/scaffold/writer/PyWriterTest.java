@@ -212,13 +212,13 @@ public class PyWriterTest {
         PyFunction function = new PyFunction("", "func1", "source docstring body");
         String docStringOutsideClass = writer.constructDocString(function);
         assertEquals(docStringOutsideClass, MessageFormat.format("{0}\"\"\"{1}\"\"\"{2}", writer.indent,
-                function.docstring, System.lineSeparator()));
+                function.getDocstring(), System.lineSeparator()));
 
         // function inside a class
         config.loadTestsInsideClass(ABBREV_YES);
         String docStringInsideClass = writer.constructDocString(function);
         assertEquals(docStringInsideClass, MessageFormat.format("{0}{0}\"\"\"{1}\"\"\"{2}", writer.indent,
-                function.docstring, System.lineSeparator()));
+                function.getDocstring(), System.lineSeparator()));
     }
 
     @Test
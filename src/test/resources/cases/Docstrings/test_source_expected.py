@@ -3,11 +3,11 @@ import unittest
 class TestCase(unittest.TestCase):
 
   def test_function1(self):
-    """function docstring"""
+    """Docstring of function1"""
     assert True
     return
 
   def test_function2(self):
-    """function docstring"""
+    """Docstring of function2"""
     assert True
     return
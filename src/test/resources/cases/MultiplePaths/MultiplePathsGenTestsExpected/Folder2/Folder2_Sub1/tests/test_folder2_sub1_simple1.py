@@ -10,12 +10,12 @@ class TestCase(unittest.TestCase):
     return
 
   def testfunction1(self):
-    """function docstring"""
+    """Docstring of function1"""
     assert True
     return
 
   def testfunction2(self):
-    """function docstring"""
+    """Docstring of function2"""
     assert True
     return
 
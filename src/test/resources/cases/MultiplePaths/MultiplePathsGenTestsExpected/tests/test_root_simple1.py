@@ -10,12 +10,12 @@ class TestCase(unittest.TestCase):
     return
 
   def testfunction1_1(self):
-    """function docstring"""
+    """Docstring of function1"""
     assert True
     return
 
   def testfunction1_2(self):
-    """function docstring"""
+    """Docstring of function2"""
     assert True
     return
 
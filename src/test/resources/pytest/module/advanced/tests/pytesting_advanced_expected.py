@@ -5,11 +5,11 @@ import shutil
 import pytest
 
 def unit_function1():
-    """function docstring"""
+    """Docstring of function1"""
     assert 1 == 1
     return
 
 def unit_function2():
-    """function docstring"""
+    """Docstring of function2"""
     assert 1 == 1
     return